@@ -2,7 +2,10 @@ package me.ly.tools.mybatis.base;
 
 import me.ly.tools.mybatis.entity.Pagination;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 基础业务接口
@@ -32,6 +35,31 @@ public interface BaseService {
      */
     <T> List<T> selectAll(Class<T> clazz, String where, Object... params);
 
+    /**
+     * 根据条件流式查询全部，逐行交给consumer处理，内存占用与结果集大小无关。<br>
+     * Mysql逐行读取期间同一连接不能执行其它SQL，consumer中不要在同一事务内查询数据库
+     *
+     * @param clazz 对象class
+     * @param consumer 处理每一个对象
+     * @param where where条件，支持?占位符
+     * @param params 参数值。与?占位符一一对应
+     */
+    <T> void forEach(Class<T> clazz, Consumer<? super T> consumer, String where, Object... params);
+
+    /**
+     * 并行扫描全表。按@Id的最小值、最大值把主键切分为多个区间，同时最多parallelism个区间各用一个连接流式查询。<br>
+     * 只支持数值主键；sink会在多个线程中同时调用，必须线程安全；任一区间失败时立即停止其它区间并抛出异常。
+     * 线程来自BaseServiceImpl的scan线程池，多个scan同时执行时共用，sink中不要再调用scan
+     *
+     * @param clazz 对象class
+     * @param parallelism 同时扫描的区间数，不应超过连接池大小
+     * @param sink 处理每一个对象
+     * @param where where条件，只能是条件，不支持ORDER BY、GROUP BY、LIMIT，支持?占位符，可为null
+     * @param params 参数值。与?占位符一一对应
+     * @return 扫描的条数
+     */
+    <T> long scan(Class<T> clazz, int parallelism, Consumer<? super T> sink, String where, Object... params);
+
     /**
      * 根据ID查询
      *
@@ -41,6 +69,50 @@ public interface BaseService {
      */
     <T> T selectById(Class<T> clazz, Object id);
 
+    /**
+     * 根据ID延迟查询。在BatchScope中时只登记id，同一作用域中同一实体类的多次查询合并为一次 ID IN (...)；
+     * 不在BatchScope中时立即查询
+     *
+     * @param clazz 对象class
+     * @param id id
+     * @return 延迟加载的结果，调用get()获取对象
+     */
+    <T> Deferred<T> loadById(Class<T> clazz, Object id);
+
+    /**
+     * 在当前线程打开合并查询的作用域，用try-with-resources关闭
+     *
+     * @return BatchScope
+     */
+    BatchScope openBatchScope();
+
+    /**
+     * 根据多个ID查询，按数据库允许的大小分批执行 ID IN (...)
+     *
+     * @param clazz 对象class
+     * @param ids id集合，忽略null和重复的id
+     * @return 按ids的顺序排列，不存在的id没有对应的对象
+     */
+    <T> List<T> selectByIds(Class<T> clazz, Collection<?> ids);
+
+    /**
+     * 根据多个数值ID查询
+     *
+     * @param clazz 对象class
+     * @param ids id数组
+     * @return 按ids的顺序排列，不存在的id没有对应的对象
+     */
+    <T> List<T> selectByIds(Class<T> clazz, long... ids);
+
+    /**
+     * 根据多个ID查询
+     *
+     * @param clazz 对象class
+     * @param ids id集合，忽略null
+     * @return Map&lt;id, 对象>，按ids的顺序，不存在的id不在Map中
+     */
+    <K, T> Map<K, T> selectMapByIds(Class<T> clazz, Collection<K> ids);
+
     /**
      * 根据条件查询全部（分页）
      *
@@ -61,13 +133,21 @@ public interface BaseService {
     <T> int insert(T obj);
 
     /**
-     * 插入多条数据,目前只支持Mysql数据库
+     * 插入多条数据,目前只支持Mysql数据库。自增主键会写回@Id字段
      *
      * @param list 数据集合
      * @return int
      */
     <T> int insertList(List<T> list);
 
+    /**
+     * 插入多条数据，使用JDBC批处理逐条insert，不限数据库。自增主键会写回@Id字段
+     *
+     * @param list 数据集合
+     * @return 每个对象插入的条数，与list顺序一致
+     */
+    <T> int[] insertBatch(List<T> list);
+
     /**
      * 删除一个实体类。必须设置ID
      *
@@ -75,6 +155,22 @@ public interface BaseService {
      */
     <T> int delete(T obj);
 
+    /**
+     * 批量删除实体类，使用JDBC批处理。必须设置ID
+     *
+     * @param objs 需要删除的对象集合
+     * @return 删除的条数
+     */
+    <T> int deleteList(List<T> objs);
+
+    /**
+     * 批量删除实体类，使用JDBC批处理。必须设置ID
+     *
+     * @param objs 需要删除的对象集合
+     * @return 每个对象删除的条数，与objs顺序一致
+     */
+    <T> int[] deleteBatch(List<T> objs);
+
     /**
      * 更新一个实体（null或""字段除外），根据ID更新。 <br>
      * ignoreNull = true<br>
@@ -113,6 +209,16 @@ public interface BaseService {
      */
     <T> int updateList(List<T> objs, boolean ignoreNull, boolean ignoreEmpty);
 
+    /**
+     * 更新多条数据,根据ID更新。使用JDBC批处理，相同字段组合的对象在同一批中执行 <br>
+     *
+     * @param objs 带ID的对象集
+     * @param ignoreNull 是否忽略Null字段
+     * @param ignoreEmpty 是否忽略""字段
+     * @return 每个对象更新的条数，与objs顺序一致
+     */
+    <T> int[] updateBatch(List<T> objs, boolean ignoreNull, boolean ignoreEmpty);
+
     /**
      * 执行一个insert/update/delete SQL语句。不支持SELECT<br>
      *
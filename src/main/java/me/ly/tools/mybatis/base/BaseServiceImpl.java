@@ -1,13 +1,50 @@
 package me.ly.tools.mybatis.base;
 
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import me.ly.tools.mybatis.cache.EntityCacheManager;
+import me.ly.tools.mybatis.cache.QueryCacheManager;
+import me.ly.tools.mybatis.cache.QueryKey;
+import me.ly.tools.mybatis.cache.SingleFlight;
 import me.ly.tools.mybatis.dao.GeneralMapper;
 import me.ly.tools.mybatis.entity.Pagination;
+import me.ly.tools.mybatis.metrics.Metrics;
+import me.ly.tools.mybatis.mybatis.CRUDTemplate;
+import me.ly.tools.mybatis.mybatis.EntityColumn;
+import me.ly.tools.mybatis.mybatis.EntityMetadata;
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+import me.ly.tools.mybatis.utils.ReflectUtil;
 
 /**
  * 基础业务接口实现类
@@ -21,6 +58,143 @@ public class BaseServiceImpl implements BaseService {
     @Autowired
     private GeneralMapper generalMapper;
 
+    /**
+     * 用于打开批处理会话。SqlSessionFactoryBean创建的会话会加入当前Spring事务，未配置时批量操作逐条执行
+     */
+    @Autowired(required = false)
+    private SqlSessionFactory sqlSessionFactory;
+
+    /** 每批执行的条数。insertList每条SQL的最大行数为不超过它的2的幂 */
+    private int batchSize = 500;
+
+    /** JDBC单条语句的占位符上限 */
+    private static final int MAX_BIND_PARAMETERS = 65535;
+
+    /** insertList每条SQL的估算字节上限，应小于Mysql的max_allowed_packet */
+    private int insertMaxBytes = 4 * 1024 * 1024;
+
+    /** forEach每次从数据库读取的行数，为null时按数据库选择 */
+    private Integer streamFetchSize;
+
+    /** scan使用的线程池，为null时使用defaultScanExecutor */
+    private Executor scanExecutor;
+
+    /** 默认的scan线程池，所有scan调用共用，线程数不超过scanPoolSize，第一次scan时创建 */
+    private volatile ExecutorService defaultScanExecutor;
+
+    /** 默认scan线程池的线程数，也是同时占用的连接数上限 */
+    private int scanPoolSize = 8;
+
+    private final CRUDTemplate crudTemplate = new CRUDTemplate();
+
+    /** 记录缓存命中的MappedStatement id */
+    private static final String SELECT_BY_ID_STATEMENT = GeneralMapper.class.getName() + ".selectById";
+
+    private static final String SELECT_ALL_STATEMENT = GeneralMapper.class.getName() + ".selectAll";
+
+    /** scan每个线程分到的区间数，区间越多数据分布不均时负载越平均 */
+    private static final int SCAN_RANGES_PER_THREAD = 4;
+
+    private static final AtomicInteger SCAN_THREAD_NUMBER = new AtomicInteger();
+
+    /** selectByIds每条SQL的占位符个数，不足时用最后一个id补齐，SQL只有这几种，可以缓存。最大1000（Oracle IN的上限） */
+    private static final int[] ID_BUCKETS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1000 };
+
+    /** selectById的实体缓存，通过本类新增、修改、删除时清除 */
+    private final EntityCacheManager entityCacheManager = new EntityCacheManager();
+
+    /** selectAll、selectOne的查询缓存，通过本类修改表时失效 */
+    private final QueryCacheManager queryCacheManager = new QueryCacheManager();
+
+    /** 是否合并相同的并发查询（selectById、selectAll、selectOne） */
+    private boolean coalesceSelects;
+
+    private final SingleFlight<QueryKey, List<Object>> singleFlight = new SingleFlight<>();
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize必须大于0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public Integer getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(Integer streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public Executor getScanExecutor() {
+        return scanExecutor;
+    }
+
+    /**
+     * scan使用的线程池，应有线程数上限，不超过连接池大小。为null时使用内置的共用线程池（scanPoolSize个线程）
+     */
+    public void setScanExecutor(Executor scanExecutor) {
+        this.scanExecutor = scanExecutor;
+    }
+
+    public int getScanPoolSize() {
+        return scanPoolSize;
+    }
+
+    /**
+     * 内置scan线程池的线程数，需在第一次scan之前设置
+     */
+    public void setScanPoolSize(int scanPoolSize) {
+        if (scanPoolSize <= 0) {
+            throw new IllegalArgumentException("scanPoolSize必须大于0");
+        }
+        this.scanPoolSize = scanPoolSize;
+    }
+
+    /**
+     * 实体缓存，用于开启缓存、查看统计
+     */
+    public EntityCacheManager getEntityCacheManager() {
+        return entityCacheManager;
+    }
+
+    /**
+     * 查询缓存，用于开启缓存、设置内存上限、查看统计
+     */
+    public QueryCacheManager getQueryCacheManager() {
+        return queryCacheManager;
+    }
+
+    public boolean isCoalesceSelects() {
+        return coalesceSelects;
+    }
+
+    /**
+     * 开启后，多个线程同时执行相同的查询（实体类、where、参数都相同）时只查询一次数据库，其它线程等待并拿到结果的副本
+     */
+    public void setCoalesceSelects(boolean coalesceSelects) {
+        this.coalesceSelects = coalesceSelects;
+    }
+
+    public SingleFlight<QueryKey, List<Object>> getSingleFlight() {
+        return singleFlight;
+    }
+
+    public int getInsertMaxBytes() {
+        return insertMaxBytes;
+    }
+
+    public void setInsertMaxBytes(int insertMaxBytes) {
+        if (insertMaxBytes <= 0) {
+            throw new IllegalArgumentException("insertMaxBytes必须大于0");
+        }
+        this.insertMaxBytes = insertMaxBytes;
+    }
+
     @Override
     public <T> T selectOne(Class<T> clazz, String where, Object... params) {
         List<T> list = this.selectAll(clazz, where, params);
@@ -31,20 +205,366 @@ public class BaseServiceImpl implements BaseService {
     }
 
     @Override
-    public <T> T selectById(Class<T> clazz, Object id) {
+    public <T> T selectById(final Class<T> clazz, final Object id) {
         if (id == null) {
             return null;
         }
-        List<T> list = generalMapper.selectById(clazz, id);
+        final Object[] params = { id };
+        Supplier<List<T>> loader = () -> generalMapper.selectById(clazz, id);
+        if (!entityCacheManager.isEnabled(clazz)) {
+            List<T> list = this.coalesce(clazz, null, params, 0, loader);
+            return list == null || list.isEmpty() ? null : list.get(0);
+        }
+        T obj = entityCacheManager.get(clazz, id);
+        Metrics.get().recordCacheAccess(SELECT_BY_ID_STATEMENT, clazz, obj != null);
+        if (obj != null) {
+            return obj;
+        }
+        long version = entityCacheManager.version(clazz);
+        List<T> list = this.coalesce(clazz, null, params, version, loader);
         if (list == null || list.isEmpty()) {
             return null;
         }
+        entityCacheManager.put(clazz, id, list.get(0), version);
         return list.get(0);
     }
 
     @Override
-    public <T> List<T> selectAll(Class<T> clazz, String where, Object... params) {
-        return generalMapper.selectAll(clazz, where, params);
+    public <T> List<T> selectAll(final Class<T> clazz, final String where, final Object... params) {
+        Supplier<List<T>> loader = () -> generalMapper.selectAll(clazz, where, params);
+        if (!queryCacheManager.isEnabled(clazz)) {
+            return this.coalesce(clazz, where, params, 0, loader);
+        }
+        List<T> list = queryCacheManager.get(clazz, where, params);
+        Metrics.get().recordCacheAccess(SELECT_ALL_STATEMENT, clazz, list != null);
+        if (list != null) {
+            return list;
+        }
+        long version = queryCacheManager.version(clazz);
+        list = this.coalesce(clazz, where, params, version, loader);
+        queryCacheManager.put(clazz, where, params, list, version);
+        return list;
+    }
+
+    @Override
+    public <T> Deferred<T> loadById(Class<T> clazz, Object id) {
+        BatchScope scope = BatchScope.current();
+        if (scope == null || id == null) {
+            return Deferred.of(this.selectById(clazz, id));
+        }
+        if (entityCacheManager.isEnabled(clazz)) {
+            T obj = entityCacheManager.get(clazz, id);
+            Metrics.get().recordCacheAccess(SELECT_BY_ID_STATEMENT, clazz, obj != null);
+            if (obj != null) {
+                return Deferred.of(obj);
+            }
+        }
+        return scope.load(clazz, id);
+    }
+
+    @Override
+    public BatchScope openBatchScope() {
+        return BatchScope.open(this);
+    }
+
+    @Override
+    public <T> List<T> selectByIds(Class<T> clazz, Collection<?> ids) {
+        Map<String, ?> distinct = distinctIds(ids);
+        Map<String, T> found = this.selectByIdArray(clazz, distinct.values().toArray(), distinct.size());
+        return orderByIds(distinct.keySet(), found);
+    }
+
+    @Override
+    public <T> List<T> selectByIds(Class<T> clazz, long... ids) {
+        if (ids == null || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Map<String, T> found = this.selectByIdArray(clazz, ids, ids.length);
+        List<T> list = new ArrayList<>(found.size());
+        for (long id : ids) {
+            // remove：重复的id只返回一次
+            T obj = found.remove(String.valueOf(id));
+            if (obj != null) {
+                list.add(obj);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public <K, T> Map<K, T> selectMapByIds(Class<T> clazz, Collection<K> ids) {
+        Map<String, K> distinct = distinctIds(ids);
+        Map<String, T> found = this.selectByIdArray(clazz, distinct.values().toArray(), distinct.size());
+        Map<K, T> map = new LinkedHashMap<>(found.size() * 4 / 3 + 1);
+        for (Map.Entry<String, K> entry : distinct.entrySet()) {
+            T obj = found.get(entry.getKey());
+            if (obj != null) {
+                map.put(entry.getValue(), obj);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 按ID_BUCKETS分批执行 ID IN (...)
+     *
+     * @param ids Object[]或long[]
+     * @param size id个数
+     * @return Map&lt;MyBatisUtil.idKey(主键), 对象>
+     */
+    private <T> Map<String, T> selectByIdArray(Class<T> clazz, Object ids, int size) {
+        Map<String, T> found = new HashMap<>(size * 4 / 3 + 1);
+        if (size == 0) {
+            return found;
+        }
+        EntityColumn idColumn = EntityMetadata.of(clazz).getIdColumn();
+        if (idColumn == null) {
+            throw new IllegalArgumentException(clazz.getName() + "没有定义@Id");
+        }
+        int maxBucket = ID_BUCKETS[ID_BUCKETS.length - 1];
+        for (int start = 0; start < size; start += maxBucket) {
+            int count = Math.min(maxBucket, size - start);
+            int bucket = 0;
+            while (ID_BUCKETS[bucket] < count) {
+                bucket++;
+            }
+            Object chunk = chunk(ids, start, count, ID_BUCKETS[bucket]);
+            for (T obj : generalMapper.selectByIds(clazz, chunk)) {
+                found.put(MyBatisUtil.idKey(idColumn.getValue(obj)), obj);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 取出[start, start + count)，长度补齐到length，用最后一个id填充
+     */
+    private static Object chunk(Object ids, int start, int count, int length) {
+        if (ids instanceof long[]) {
+            long[] chunk = Arrays.copyOfRange((long[]) ids, start, start + length);
+            Arrays.fill(chunk, count, length, chunk[count - 1]);
+            return chunk;
+        }
+        Object[] chunk = Arrays.copyOfRange((Object[]) ids, start, start + length);
+        Arrays.fill(chunk, count, length, chunk[count - 1]);
+        return chunk;
+    }
+
+    /**
+     * 去掉null和重复的id
+     *
+     * @return Map&lt;MyBatisUtil.idKey(id), id>，按ids的顺序
+     */
+    private static <K> Map<String, K> distinctIds(Collection<K> ids) {
+        Map<String, K> distinct = new LinkedHashMap<>();
+        if (ids == null) {
+            return distinct;
+        }
+        for (K id : ids) {
+            if (id != null) {
+                distinct.putIfAbsent(MyBatisUtil.idKey(id), id);
+            }
+        }
+        return distinct;
+    }
+
+    private static <T> List<T> orderByIds(Collection<String> keys, Map<String, T> found) {
+        List<T> list = new ArrayList<>(found.size());
+        for (String key : keys) {
+            T obj = found.get(key);
+            if (obj != null) {
+                list.add(obj);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 开启coalesceSelects时合并相同的并发查询，where为null表示selectById。<br>
+     * version为查询前获取的缓存版本号，只和版本号相同的查询合并，不放入缓存时为0
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> coalesce(final Class<T> clazz, String where, Object[] params, long version,
+            final Supplier<List<T>> loader) {
+        if (!coalesceSelects) {
+            return loader.get();
+        }
+        QueryKey key = new QueryKey(clazz, where == null ? "#selectById" : where, params);
+        // 结果只在本方法内作为List<Object>传递，元素都是T
+        Supplier<List<Object>> objects = () -> (List<Object>) (List<?>) loader.get();
+        return (List<T>) (List<?>) singleFlight.execute(key, version, objects, list -> {
+            EntityMetadata metadata = EntityMetadata.of(clazz);
+            List<Object> copies = new ArrayList<>(list.size());
+            for (Object obj : list) {
+                copies.add(metadata.copy(obj));
+            }
+            return copies;
+        });
+    }
+
+    @Override
+    public <T> void forEach(final Class<T> clazz, final Consumer<? super T> consumer, String where, Object... params) {
+        ResultHandler handler = context -> consumer.accept(clazz.cast(context.getResultObject()));
+        generalMapper.selectStream(clazz, streamFetchSize, where, params, handler);
+    }
+
+    @Override
+    public <T> long scan(final Class<T> clazz, int parallelism, final Consumer<? super T> sink, String where,
+            Object... params) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism必须大于0");
+        }
+        String idColumn = ReflectUtil.id(clazz).get(MyBatisUtil.KEY_ID_COLUMN);
+        String condition = StringUtils.isBlank(where) ? "" : " WHERE " + where;
+        List<Map<String, Object>> bounds = generalMapper.executeSelect("SELECT MIN(" + idColumn + ") AS min_id, MAX("
+                + idColumn + ") AS max_id FROM " + ReflectUtil.tableName(clazz) + condition, params);
+        Object minValue = bounds.isEmpty() ? null : getIgnoreCase(bounds.get(0), "min_id");
+        Object maxValue = bounds.isEmpty() ? null : getIgnoreCase(bounds.get(0), "max_id");
+        if (minValue == null || maxValue == null) {
+            return 0;
+        }
+        if (!(minValue instanceof Number) || !(maxValue instanceof Number)) {
+            throw new IllegalArgumentException("scan只支持数值主键：" + clazz.getName());
+        }
+        List<long[]> ranges = splitRange(((Number) minValue).longValue(), ((Number) maxValue).longValue(),
+                parallelism * SCAN_RANGES_PER_THREAD);
+
+        final String rangeWhere = idColumn + " >= ? AND " + idColumn + " <= ?"
+                + (StringUtils.isBlank(where) ? "" : " AND (" + where + ")");
+        final Object[] userParams = params == null ? new Object[0] : params;
+        final AtomicBoolean failed = new AtomicBoolean();
+        final LongAdder count = new LongAdder();
+
+        // 每个调用同时执行的区间不超过parallelism，一个完成后再提交下一个；先完成的先取出，失败时立即停止
+        CompletionService<Object> completion = new ExecutorCompletionService<>(this.scanExecutor());
+        List<Future<Object>> futures = new ArrayList<>(ranges.size());
+        Throwable error = null;
+        int next = 0;
+        int running = 0;
+        try {
+            for (; next < ranges.size() && running < parallelism; next++, running++) {
+                futures.add(completion.submit(this.scanTask(clazz, ranges.get(next), rangeWhere, userParams, sink,
+                        failed, count), null));
+            }
+            while (running > 0) {
+                Future<Object> done = completion.take();
+                running--;
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    error = e.getCause();
+                    break;
+                }
+                if (next < ranges.size()) {
+                    futures.add(completion.submit(this.scanTask(clazz, ranges.get(next++), rangeWhere, userParams,
+                            sink, failed, count), null));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } finally {
+            if (running > 0) {
+                failed.set(true);
+                // 未开始的区间不再执行，执行中的区间在下一行停止
+                for (Future<Object> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IllegalStateException("扫描失败：" + clazz.getName(), error);
+        }
+        return count.sum();
+    }
+
+    /**
+     * 扫描一个主键区间。失败时立即设置failed，其它区间读取下一行时停止
+     */
+    private <T> Runnable scanTask(final Class<T> clazz, final long[] range, final String rangeWhere,
+            final Object[] userParams, final Consumer<? super T> sink, final AtomicBoolean failed,
+            final LongAdder count) {
+        return () -> {
+            if (failed.get()) {
+                return;
+            }
+            Object[] rangeParams = new Object[userParams.length + 2];
+            rangeParams[0] = range[0];
+            rangeParams[1] = range[1];
+            System.arraycopy(userParams, 0, rangeParams, 2, userParams.length);
+            ResultHandler handler = context -> {
+                if (failed.get()) {
+                    context.stop();
+                    return;
+                }
+                sink.accept(clazz.cast(context.getResultObject()));
+                count.increment();
+            };
+            try {
+                generalMapper.selectStream(clazz, streamFetchSize, rangeWhere, rangeParams, handler);
+            } catch (RuntimeException | Error e) {
+                failed.set(true);
+                throw e;
+            }
+        };
+    }
+
+    private Executor scanExecutor() {
+        if (scanExecutor != null) {
+            return scanExecutor;
+        }
+        ExecutorService executor = defaultScanExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = defaultScanExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(scanPoolSize, scanPoolSize, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), r -> {
+                                Thread thread = new Thread(r, "base-scan-" + SCAN_THREAD_NUMBER.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    // 空闲时不保留线程
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    defaultScanExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 把[min, max]切分为不超过count个不相交的闭区间。max - min 按无符号数计算，不会溢出
+     */
+    private static List<long[]> splitRange(long min, long max, int count) {
+        long span = max - min;
+        long step = Long.divideUnsigned(span, count);
+        List<long[]> ranges = new ArrayList<>(count);
+        long low = min;
+        while (true) {
+            // 剩余部分不足一个区间时直接到max
+            if (Long.compareUnsigned(max - low, step) <= 0 || ranges.size() == count - 1) {
+                ranges.add(new long[] { low, max });
+                return ranges;
+            }
+            long high = low + step;
+            ranges.add(new long[] { low, high });
+            low = high + 1;
+        }
+    }
+
+    private static Object getIgnoreCase(Map<String, Object> map, String key) {
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (key.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
     }
 
     @Override
@@ -54,25 +574,173 @@ public class BaseServiceImpl implements BaseService {
 
     @Override
     public <T> int insert(T obj) {
-        return generalMapper.insert(obj);
+        try {
+            return generalMapper.insert(obj);
+        } finally {
+            this.evictCache(obj);
+        }
     }
 
+    /**
+     * 按占位符上限、估算字节数和batchSize分段插入，所有分段使用同一个连接
+     */
     @Override
     public <T> int insertList(List<T> list) {
         if (CollectionUtils.isEmpty(list)) {
             return 0;
         }
-        return generalMapper.insertList(list);
+        try {
+            return this.doInsertList(this.insertChunks(list));
+        } finally {
+            this.evictCache(list);
+        }
+    }
+
+    private <T> int doInsertList(List<List<T>> chunks) {
+        if (chunks.size() == 1) {
+            return generalMapper.insertList(chunks.get(0));
+        }
+        int count = 0;
+        if (sqlSessionFactory == null) {
+            for (List<T> chunk : chunks) {
+                count += generalMapper.insertList(chunk);
+            }
+            return count;
+        }
+        // 分段大小相同的SQL相同，REUSE执行器复用PreparedStatement
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.REUSE)) {
+            GeneralMapper mapper = session.getMapper(GeneralMapper.class);
+            for (List<T> chunk : chunks) {
+                count += mapper.insertList(chunk);
+            }
+            session.commit();
+        }
+        return count;
+    }
+
+    @Override
+    public <T> int[] insertBatch(List<T> list) {
+        if (CollectionUtils.isEmpty(list)) {
+            return new int[0];
+        }
+        return this.executeBatch(list, new BatchOperation<T>() {
+
+            @Override
+            public String sql(T obj) throws Exception {
+                return crudTemplate.insert(obj);
+            }
+
+            @Override
+            public int execute(GeneralMapper mapper, T obj) {
+                return mapper.insert(obj);
+            }
+        });
+    }
+
+    /**
+     * insertList分段。每段的行数不超过batchSize和占位符上限，估算的SQL字节数不超过insertMaxBytes。<br>
+     * 每段的行数都是2的幂，SQL只有十几种，可以缓存
+     *
+     * @param list 数据集合
+     * @return 分段，为list的subList
+     */
+    private <T> List<List<T>> insertChunks(List<T> list) {
+        EntityMetadata metadata = EntityMetadata.of(list.get(0).getClass());
+        // 与CRUDTemplate.insertList一致，字段组合以第一个对象为准
+        List<EntityColumn> columns = new ArrayList<>(metadata.getInsertableColumns());
+        EntityColumn idColumn = metadata.getIdColumn();
+        if (idColumn != null && idColumn.getValue(list.get(0)) != null) {
+            columns.add(idColumn);
+        }
+        int maxRows = Integer.highestOneBit(Math.min(batchSize, MAX_BIND_PARAMETERS / Math.max(columns.size(), 1)));
+
+        List<List<T>> chunks = new ArrayList<>(list.size() / maxRows + 1);
+        int start = 0;
+        long bytes = 0;
+        for (int i = 0; i < list.size(); i++) {
+            long rowBytes = estimateBytes(columns, list.get(i));
+            if (i > start && (i - start >= maxRows || bytes + rowBytes > insertMaxBytes)) {
+                addChunks(chunks, list, start, i);
+                start = i;
+                bytes = 0;
+            }
+            bytes += rowBytes;
+        }
+        addChunks(chunks, list, start, list.size());
+        return chunks;
+    }
+
+    /**
+     * 按2的幂拆分[start, end)，例如300行拆为256、32、8、4
+     */
+    private static <T> void addChunks(List<List<T>> chunks, List<T> list, int start, int end) {
+        while (start < end) {
+            int rows = Integer.highestOneBit(end - start);
+            chunks.add(list.subList(start, start + rows));
+            start += rows;
+        }
+    }
+
+    /**
+     * 估算一行数据在SQL中的字节数（按UTF-8，字符串每字符最多3字节）
+     */
+    private static long estimateBytes(List<EntityColumn> columns, Object obj) {
+        long bytes = 3;
+        for (EntityColumn column : columns) {
+            Object value = column.getValue(obj);
+            if (value == null) {
+                bytes += 5;
+            } else if (value instanceof CharSequence) {
+                bytes += ((CharSequence) value).length() * 3L + 3;
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length * 2L + 4;
+            } else {
+                bytes += 28;
+            }
+        }
+        return bytes;
     }
 
     @Override
     public <T> int delete(T obj) {
-        return generalMapper.delete(obj);
+        try {
+            return generalMapper.delete(obj);
+        } finally {
+            this.evictCache(obj);
+        }
+    }
+
+    @Override
+    public <T> int deleteList(List<T> objs) {
+        return sum(this.deleteBatch(objs));
+    }
+
+    @Override
+    public <T> int[] deleteBatch(List<T> objs) {
+        if (CollectionUtils.isEmpty(objs)) {
+            return new int[0];
+        }
+        return this.executeBatch(objs, new BatchOperation<T>() {
+
+            @Override
+            public String sql(T obj) {
+                return crudTemplate.delete(obj);
+            }
+
+            @Override
+            public int execute(GeneralMapper mapper, T obj) {
+                return mapper.delete(obj);
+            }
+        });
     }
 
     @Override
     public <T> int update(T obj, boolean ignoreNull, boolean ignoreEmpty) {
-        return generalMapper.update(obj, ignoreNull, ignoreEmpty);
+        try {
+            return generalMapper.update(obj, ignoreNull, ignoreEmpty);
+        } finally {
+            this.evictCache(obj);
+        }
     }
 
     @Override
@@ -82,14 +750,30 @@ public class BaseServiceImpl implements BaseService {
 
     @Override
     public <T> int updateList(List<T> objs, boolean ignoreNull, boolean ignoreEmpty) {
-        int i = 0;
+        return sum(this.updateBatch(objs, ignoreNull, ignoreEmpty));
+    }
+
+    @Override
+    public <T> int[] updateBatch(List<T> objs, final boolean ignoreNull, final boolean ignoreEmpty) {
         if (CollectionUtils.isEmpty(objs)) {
-            return i;
+            return new int[0];
         }
-        for (T obj : objs) {
-            i += generalMapper.update(obj, ignoreNull, ignoreEmpty);
-        }
-        return i;
+        return this.executeBatch(objs, new BatchOperation<T>() {
+
+            @Override
+            public String sql(T obj) throws Exception {
+                Map<String, Object> map = new HashMap<>(4);
+                map.put("bean", obj);
+                map.put("ignoreNull", ignoreNull);
+                map.put("ignoreEmpty", ignoreEmpty);
+                return crudTemplate.update(map);
+            }
+
+            @Override
+            public int execute(GeneralMapper mapper, T obj) {
+                return mapper.update(obj, ignoreNull, ignoreEmpty);
+            }
+        });
     }
 
     @Override
@@ -99,6 +783,15 @@ public class BaseServiceImpl implements BaseService {
 
     @Override
     public int executeCUD(String sql, Object... param) {
+        try {
+            return this.doExecuteCUD(sql, param);
+        } finally {
+            entityCacheManager.evictBySql(sql);
+            queryCacheManager.invalidateBySql(sql);
+        }
+    }
+
+    private int doExecuteCUD(String sql, Object... param) {
         if (sql.toUpperCase().trim().startsWith("INSERT")) {
             return generalMapper.executeInsert(sql, param);
         }
@@ -110,4 +803,125 @@ public class BaseServiceImpl implements BaseService {
         }
         throw new IllegalArgumentException("非法的insert/update/delete语句");
     }
+
+    /**
+     * 使用BATCH执行器批量执行。<br>
+     * 按生成的SQL分组，同一组的对象连续执行以复用同一个PreparedStatement，每batchSize条提交一次executeBatch
+     *
+     * @param objs 对象集合
+     * @param operation 批量操作
+     * @return 每个对象影响的条数，与objs顺序一致
+     */
+    private <T> int[] executeBatch(List<T> objs, BatchOperation<T> operation) {
+        try {
+            return this.doExecuteBatch(objs, operation);
+        } finally {
+            this.evictCache(objs);
+        }
+    }
+
+    private <T> int[] doExecuteBatch(List<T> objs, BatchOperation<T> operation) {
+        int[] counts = new int[objs.size()];
+        if (sqlSessionFactory == null) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = operation.execute(generalMapper, objs.get(i));
+            }
+            return counts;
+        }
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            String sql;
+            try {
+                sql = operation.sql(objs.get(i));
+            } catch (Exception e) {
+                throw new IllegalStateException("生成SQL失败", e);
+            }
+            List<Integer> group = groups.get(sql);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(sql, group);
+            }
+            group.add(i);
+        }
+
+        // 执行顺序，BatchResult中的条数按该顺序返回
+        int[] order = new int[counts.length];
+        int submitted = 0;
+        int flushed = 0;
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            GeneralMapper mapper = session.getMapper(GeneralMapper.class);
+            for (List<Integer> group : groups.values()) {
+                for (int index : group) {
+                    operation.execute(mapper, objs.get(index));
+                    order[submitted++] = index;
+                    if (submitted - flushed >= batchSize) {
+                        flushed = flush(session, counts, order, flushed);
+                    }
+                }
+            }
+            flush(session, counts, order, flushed);
+            session.commit();
+        }
+        return counts;
+    }
+
+    private static int flush(SqlSession session, int[] counts, int[] order, int flushed) {
+        for (BatchResult result : session.flushStatements()) {
+            for (int count : result.getUpdateCounts()) {
+                counts[order[flushed++]] = count;
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * 清除对象的实体缓存，对象所在表的查询缓存失效
+     */
+    private void evictCache(Object obj) {
+        entityCacheManager.evict(obj);
+        queryCacheManager.invalidate(obj.getClass());
+    }
+
+    private <T> void evictCache(List<T> objs) {
+        Class<?> lastClass = null;
+        for (T obj : objs) {
+            entityCacheManager.evict(obj);
+            if (obj.getClass() != lastClass) {
+                lastClass = obj.getClass();
+                queryCacheManager.invalidate(lastClass);
+            }
+        }
+    }
+
+    /**
+     * 合计条数。驱动返回SUCCESS_NO_INFO（执行成功但条数未知）时按1条计
+     */
+    private static int sum(int[] counts) {
+        int sum = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                sum += count;
+            } else if (count == Statement.SUCCESS_NO_INFO) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 批量操作
+     */
+    private interface BatchOperation<T> {
+
+        /**
+         * 对象对应的SQL，用于分组
+         */
+        String sql(T obj) throws Exception;
+
+        /**
+         * 执行
+         */
+        int execute(GeneralMapper mapper, T obj);
+    }
 }
@@ -0,0 +1,152 @@
+package me.ly.tools.mybatis.base;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+
+/**
+ * 合并查询的作用域，绑定到当前线程。<br>
+ * 作用域内的BaseService.loadById不立即查询，而是返回Deferred，按实体类收集id，在调用flush()、
+ * 第一次读取Deferred、同一实体类收集到1000个id或作用域关闭时，每个实体类执行一次selectMapByIds，
+ * 把循环中的多次selectById合并为一次 ID IN (...) 查询。<br>
+ * 通常在一次请求的入口打开（如拦截器、过滤器），嵌套打开时使用外层的作用域
+ *
+ * <pre>
+ * try (BatchScope scope = baseService.openBatchScope()) {
+ *     List&lt;Deferred&lt;User&gt;&gt; users = new ArrayList&lt;&gt;();
+ *     for (Order order : orders) {
+ *         users.add(baseService.loadById(User.class, order.getUserId()));
+ *     }
+ *     // 第一次get()时执行一次查询
+ *     users.get(0).get();
+ * }
+ * </pre>
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public final class BatchScope implements AutoCloseable {
+
+    private static final ThreadLocal<BatchScope> CURRENT = new ThreadLocal<>();
+
+    /** 同一实体类收集到该数量时立即查询，与selectByIds每条SQL的id上限一致 */
+    private static final int MAX_PENDING = 1000;
+
+    private final BaseService baseService;
+
+    /** 嵌套打开的层数 */
+    private int depth = 1;
+
+    /** Map&lt;实体类, Map&lt;MyBatisUtil.idKey(id), Deferred>> */
+    private Map<Class<?>, Map<String, Deferred<?>>> pending = new LinkedHashMap<>();
+
+    private BatchScope(BaseService baseService) {
+        this.baseService = baseService;
+    }
+
+    /**
+     * 打开作用域，当前线程已打开时返回已有的作用域
+     *
+     * @param baseService 执行查询
+     * @return BatchScope
+     */
+    static BatchScope open(BaseService baseService) {
+        BatchScope scope = CURRENT.get();
+        if (scope != null) {
+            synchronized (scope) {
+                scope.depth++;
+            }
+            return scope;
+        }
+        scope = new BatchScope(baseService);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 当前线程的作用域
+     *
+     * @return 未打开返回null
+     */
+    public static BatchScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 登记一个id，同一个id返回同一个Deferred
+     *
+     * @param clazz 实体类
+     * @param id 主键
+     * @return Deferred
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> Deferred<T> load(Class<T> clazz, Object id) {
+        Map<String, Deferred<?>> ids = pending.get(clazz);
+        if (ids == null) {
+            ids = new LinkedHashMap<>();
+            pending.put(clazz, ids);
+        }
+        String key = MyBatisUtil.idKey(id);
+        Deferred<T> deferred = (Deferred<T>) ids.get(key);
+        if (deferred == null) {
+            deferred = new Deferred<>(this, id);
+            ids.put(key, deferred);
+            if (ids.size() >= MAX_PENDING) {
+                pending.remove(clazz);
+                this.execute(clazz, ids);
+            }
+        }
+        return deferred;
+    }
+
+    /**
+     * 执行所有等待中的查询，每个实体类一条SQL（超过1000个id时分批）
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Class<?>, Map<String, Deferred<?>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        for (Map.Entry<Class<?>, Map<String, Deferred<?>>> entry : batch.entrySet()) {
+            this.execute(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void execute(Class<?> clazz, Map<String, Deferred<?>> ids) {
+        List<Object> idList = new ArrayList<>(ids.size());
+        for (Deferred<?> deferred : ids.values()) {
+            idList.add(deferred.id);
+        }
+        Map<Object, ?> found;
+        try {
+            found = baseService.selectMapByIds(clazz, idList);
+        } catch (RuntimeException e) {
+            for (Deferred<?> deferred : ids.values()) {
+                deferred.fail(e);
+            }
+            return;
+        }
+        for (Deferred<?> deferred : ids.values()) {
+            ((Deferred<Object>) deferred).complete(found.get(deferred.id));
+        }
+    }
+
+    /**
+     * 关闭作用域，执行等待中的查询。嵌套打开时只有最外层关闭时才执行
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (--depth > 0) {
+                return;
+            }
+        }
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        this.flush();
+    }
+}
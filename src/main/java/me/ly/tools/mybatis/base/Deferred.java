@@ -0,0 +1,66 @@
+package me.ly.tools.mybatis.base;
+
+/**
+ * 延迟加载的查询结果，由BatchScope合并查询后填充。第一次调用get()时如果还没有结果，会立即执行所在BatchScope中等待的所有查询
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public final class Deferred<T> {
+
+    /** 所在的BatchScope，已有结果时为null */
+    private final BatchScope scope;
+    /** 要查询的id */
+    final Object id;
+
+    private volatile boolean done;
+    private volatile T value;
+    private volatile RuntimeException error;
+
+    Deferred(BatchScope scope, Object id) {
+        this.scope = scope;
+        this.id = id;
+    }
+
+    /**
+     * 已有结果的Deferred
+     *
+     * @param value 结果
+     * @return Deferred
+     */
+    public static <T> Deferred<T> of(T value) {
+        Deferred<T> deferred = new Deferred<>(null, null);
+        deferred.complete(value);
+        return deferred;
+    }
+
+    /**
+     * 获取结果，还没有查询时立即查询
+     *
+     * @return 对象，不存在返回null
+     */
+    public T get() {
+        if (!done) {
+            scope.flush();
+        }
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+
+    /**
+     * 是否已有结果
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    void complete(T value) {
+        this.value = value;
+        this.done = true;
+    }
+
+    void fail(RuntimeException error) {
+        this.error = error;
+        this.done = true;
+    }
+}
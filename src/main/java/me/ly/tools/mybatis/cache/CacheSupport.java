@@ -0,0 +1,61 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 缓存公用方法：解析SQL中的表名
+ */
+final class CacheSupport {
+
+    /** insert/update/delete语句，跳过修饰词后的第一个表名。group(1)、group(2)分别表示update、delete */
+    private static final Pattern TABLE_PATTERN = Pattern.compile("^\\s*(?:"
+            + "(?:INSERT|REPLACE)(?:\\s+(?:LOW_PRIORITY|DELAYED|HIGH_PRIORITY|IGNORE))*\\s+INTO"
+            + "|(UPDATE)(?:\\s+(?:LOW_PRIORITY|IGNORE))*"
+            + "|(DELETE)(?:\\s+(?:LOW_PRIORITY|QUICK|IGNORE))*(?:\\s+FROM)?"
+            + ")\\s+([`\"\\[\\]\\w.]+)", Pattern.CASE_INSENSITIVE);
+
+    /** update/delete的表名部分在这些关键字之前结束 */
+    private static final Pattern TABLES_END_PATTERN = Pattern.compile("\\b(?:SET|WHERE|ORDER|LIMIT)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** 表名部分出现逗号、JOIN、USING或FROM时涉及多个表，如UPDATE a JOIN b、DELETE a FROM a, b */
+    private static final Pattern MULTI_TABLE_PATTERN = Pattern.compile(",|\\b(?:JOIN|USING|FROM)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** 解析出的表名是这些关键字时说明语句形式不认识 */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("SET", "FROM", "INTO", "WHERE", "SELECT",
+            "VALUES", "JOIN", "USING", "IGNORE", "LOW_PRIORITY", "HIGH_PRIORITY", "DELAYED", "QUICK"));
+
+    private CacheSupport() {
+    }
+
+    /**
+     * 解析insert/update/delete语句中的表名
+     *
+     * @param sql SQL
+     * @return 小写表名，不含库名。解析不出或涉及多个表时返回null，调用方应清除全部
+     */
+    static String tableOf(String sql) {
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        if (!matcher.find()) {
+            return null;
+        }
+        String table = matcher.group(3).replaceAll("[`\"\\[\\]]", "");
+        if (KEYWORDS.contains(table.toUpperCase(Locale.ROOT))) {
+            return null;
+        }
+        if (matcher.group(1) != null || matcher.group(2) != null) {
+            String rest = sql.substring(matcher.end());
+            Matcher end = TABLES_END_PATTERN.matcher(rest);
+            if (MULTI_TABLE_PATTERN.matcher(end.find() ? rest.substring(0, end.start()) : rest).find()) {
+                return null;
+            }
+        }
+        return table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,312 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import me.ly.tools.mybatis.mybatis.EntityMetadata;
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+import me.ly.tools.mybatis.mybatis.annotation.EntityCache;
+import me.ly.tools.mybatis.utils.SpringTransactions;
+
+/**
+ * 实体缓存，按实体类分区，缓存selectById的结果。<br>
+ * 标注了@EntityCache的实体类自动开启，也可以调用enable开启。缓存和返回的都是副本（Date、数组和@JsonColumn字段也复制，见EntityMetadata.copy），调用方修改对象及这些字段值不影响缓存。<br>
+ * 防止脏数据：
+ * <ul>
+ * <li>每个分区有版本号，任何清除都会使版本号加一，查询数据库前后版本号不一致时不放入缓存，避免并发修改时缓存旧值</li>
+ * <li>在Spring事务中清除时，事务结束后再清除一次，避免事务提交前其它线程读到旧值并放入缓存</li>
+ * <li>在未提交的读写事务中查询的结果不放入缓存</li>
+ * </ul>
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class EntityCacheManager {
+
+    private static Logger logger = LoggerFactory.getLogger(EntityCacheManager.class);
+
+    /** 未开启缓存的实体类 */
+    private static final Region DISABLED = new Region();
+
+    private final ConcurrentMap<Class<?>, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 开启实体类的缓存，覆盖@EntityCache的配置
+     *
+     * @param clazz 实体类，必须定义@Id
+     * @param maxSize 最大缓存条数
+     * @param expireSeconds 写入后多少秒过期，小于等于0不过期
+     */
+    public void enable(Class<?> clazz, int maxSize, long expireSeconds) {
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        if (!metadata.hasId()) {
+            throw new IllegalArgumentException(clazz.getName() + "没有定义@Id");
+        }
+        regions.put(clazz, new Region(metadata, maxSize, expireSeconds));
+    }
+
+    /**
+     * 关闭实体类的缓存
+     *
+     * @param clazz 实体类
+     */
+    public void disable(Class<?> clazz) {
+        Region region = regions.put(clazz, DISABLED);
+        if (region != null && region != DISABLED) {
+            region.clear();
+        }
+    }
+
+    public boolean isEnabled(Class<?> clazz) {
+        return region(clazz) != null;
+    }
+
+    /**
+     * 实体类的缓存，用于查看命中率等统计
+     *
+     * @param clazz 实体类
+     * @return 未开启返回null
+     */
+    public SegmentedLruCache<String, Object> getCache(Class<?> clazz) {
+        Region region = region(clazz);
+        return region == null ? null : region.cache;
+    }
+
+    /**
+     * 从缓存获取
+     *
+     * @param clazz 实体类
+     * @param id 主键
+     * @return 副本，不存在或未开启返回null
+     */
+    public <T> T get(Class<T> clazz, Object id) {
+        Region region = region(clazz);
+        if (region == null) {
+            return null;
+        }
+        Object entity = region.cache.get(key(id));
+        return entity == null ? null : clazz.cast(region.metadata.copy(entity));
+    }
+
+    /**
+     * 当前版本号，查询数据库之前获取，放入缓存时传入
+     *
+     * @param clazz 实体类
+     * @return 版本号
+     */
+    public long version(Class<?> clazz) {
+        Region region = region(clazz);
+        return region == null ? 0 : region.version.get();
+    }
+
+    /**
+     * 放入缓存。version与当前版本号不一致（查询期间有修改），或在读写事务中时不放入
+     *
+     * @param clazz 实体类
+     * @param id 主键
+     * @param entity 实体
+     * @param version 查询数据库之前获取的版本号
+     */
+    public void put(Class<?> clazz, Object id, Object entity, long version) {
+        Region region = region(clazz);
+        if (region == null || entity == null || region.version.get() != version) {
+            return;
+        }
+        if (SpringTransactions.isWritableTransaction()) {
+            return;
+        }
+        String key = key(id);
+        region.cache.put(key, region.metadata.copy(entity));
+        // 放入期间被清除过，清除时可能还没放入，再清除一次
+        if (region.version.get() != version) {
+            region.cache.remove(key);
+        }
+    }
+
+    /**
+     * 清除实体对应的缓存
+     *
+     * @param entity 实体
+     */
+    public void evict(Object entity) {
+        if (entity == null) {
+            return;
+        }
+        Region region = region(entity.getClass());
+        if (region == null) {
+            return;
+        }
+        Object id = region.metadata.getIdColumn().getValue(entity);
+        if (id == null) {
+            return;
+        }
+        String key = key(id);
+        region.evict(key);
+        this.evictAfterCompletion(region, key);
+    }
+
+    /**
+     * 清除指定主键的缓存
+     *
+     * @param clazz 实体类
+     * @param id 主键
+     */
+    public void evict(Class<?> clazz, Object id) {
+        Region region = region(clazz);
+        if (region == null || id == null) {
+            return;
+        }
+        String key = key(id);
+        region.evict(key);
+        this.evictAfterCompletion(region, key);
+    }
+
+    /**
+     * 清除表对应的所有实体类的缓存
+     *
+     * @param table 表名
+     */
+    public void evictTable(String table) {
+        String tableName = table.toLowerCase(Locale.ROOT);
+        for (Region region : regions.values()) {
+            if (region != DISABLED && region.tableName.equals(tableName)) {
+                region.clear();
+                this.evictAfterCompletion(region, null);
+            }
+        }
+    }
+
+    /**
+     * 按insert/update/delete语句中的表名清除缓存，解析不出表名时清除全部
+     *
+     * @param sql insert/update/delete语句
+     */
+    public void evictBySql(String sql) {
+        if (regions.isEmpty()) {
+            return;
+        }
+        String table = CacheSupport.tableOf(sql);
+        if (table == null) {
+            this.evictAll();
+        } else {
+            this.evictTable(table);
+        }
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public void evictAll() {
+        for (Region region : regions.values()) {
+            if (region != DISABLED) {
+                region.clear();
+                this.evictAfterCompletion(region, null);
+            }
+        }
+    }
+
+    /**
+     * 在Spring事务中时，事务结束后再清除一次。key为null时清除整个分区
+     */
+    private void evictAfterCompletion(Region region, String key) {
+        Map<Region, Set<String>> pending = SpringTransactions.afterCompletion(this, HashMap::new,
+                EntityCacheManager::evictPending);
+        if (pending == null) {
+            return;
+        }
+        if (key == null) {
+            pending.put(region, null);
+            return;
+        }
+        if (pending.containsKey(region) && pending.get(region) == null) {
+            return;
+        }
+        Set<String> keys = pending.get(region);
+        if (keys == null) {
+            keys = new HashSet<>();
+            pending.put(region, keys);
+        }
+        keys.add(key);
+    }
+
+    private static void evictPending(Map<Region, Set<String>> pending) {
+        for (Map.Entry<Region, Set<String>> entry : pending.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.getKey().clear();
+            } else {
+                for (String key : entry.getValue()) {
+                    entry.getKey().evict(key);
+                }
+            }
+        }
+    }
+
+    private Region region(Class<?> clazz) {
+        Region region = regions.get(clazz);
+        if (region == null) {
+            region = DISABLED;
+            EntityCache annotation = clazz.getAnnotation(EntityCache.class);
+            if (annotation != null) {
+                EntityMetadata metadata = EntityMetadata.of(clazz);
+                if (metadata.hasId()) {
+                    region = new Region(metadata, annotation.maxSize(), annotation.expireSeconds());
+                } else {
+                    logger.warn(clazz.getName() + "没有定义@Id，@EntityCache不生效");
+                }
+            }
+            Region exist = regions.putIfAbsent(clazz, region);
+            if (exist != null) {
+                region = exist;
+            }
+        }
+        return region == DISABLED ? null : region;
+    }
+
+    /**
+     * 缓存key。整数类型统一为同一个key，selectById(clazz, 1)和主键为Long的对象对应同一条缓存
+     */
+    private static String key(Object id) {
+        return MyBatisUtil.idKey(id);
+    }
+
+    /**
+     * 一个实体类的缓存
+     */
+    private static final class Region {
+
+        final EntityMetadata metadata;
+        final String tableName;
+        final SegmentedLruCache<String, Object> cache;
+        final AtomicLong version = new AtomicLong();
+
+        Region() {
+            this.metadata = null;
+            this.tableName = null;
+            this.cache = null;
+        }
+
+        Region(EntityMetadata metadata, int maxSize, long expireSeconds) {
+            this.metadata = metadata;
+            this.tableName = metadata.getTableName().toLowerCase(Locale.ROOT);
+            this.cache = new SegmentedLruCache<>(maxSize, expireSeconds, TimeUnit.SECONDS);
+        }
+
+        void evict(String key) {
+            version.incrementAndGet();
+            cache.remove(key);
+        }
+
+        void clear() {
+            version.incrementAndGet();
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.ly.tools.mybatis.mybatis.EntityColumn;
+import me.ly.tools.mybatis.mybatis.EntityMetadata;
+import me.ly.tools.mybatis.mybatis.annotation.QueryCache;
+import me.ly.tools.mybatis.utils.SpringTransactions;
+
+/**
+ * 查询缓存，按(实体类, where, 参数)缓存selectAll的结果，所有结果共用一个内存上限，超过时淘汰最久未访问的结果。<br>
+ * 按表失效：每个表有版本号，通过BaseService修改表时版本号加一，缓存的结果记录查询时的版本号，版本号不一致的结果不会返回。
+ * executeCUD解析不出表名时所有表失效。<br>
+ * 缓存的结果不可修改，返回的是副本（Date、数组和@JsonColumn字段也复制，见EntityMetadata.copy）。事务相关的处理与EntityCacheManager相同
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class QueryCacheManager {
+
+    /** 未开启缓存的实体类 */
+    private static final Long DISABLED = Long.MIN_VALUE;
+
+    /** Map&lt;实体类, 过期纳秒数>，0为不过期 */
+    private final ConcurrentMap<Class<?>, Long> expireMap = new ConcurrentHashMap<>();
+
+    /** Map&lt;小写表名, 版本号> */
+    private final ConcurrentMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+
+    /** 所有表失效时加一 */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** 按访问顺序，最久未访问的在前 */
+    private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** 缓存结果的估算字节数 */
+    private long bytes;
+
+    private volatile long maxBytes = 16 * 1024 * 1024;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * 开启实体类的查询缓存，覆盖@QueryCache的配置
+     *
+     * @param clazz 实体类
+     * @param expireSeconds 写入后多少秒过期，小于等于0不过期
+     */
+    public void enable(Class<?> clazz, long expireSeconds) {
+        expireMap.put(clazz, expireSeconds <= 0 ? 0 : TimeUnit.SECONDS.toNanos(expireSeconds));
+    }
+
+    /**
+     * 关闭实体类的查询缓存
+     *
+     * @param clazz 实体类
+     */
+    public void disable(Class<?> clazz) {
+        expireMap.put(clazz, DISABLED);
+        this.invalidate(clazz);
+    }
+
+    public boolean isEnabled(Class<?> clazz) {
+        return expireNanos(clazz) != DISABLED;
+    }
+
+    /**
+     * 从缓存获取
+     *
+     * @param clazz 实体类
+     * @param where where条件
+     * @param params 参数
+     * @return 结果的副本，不存在、已失效或未开启返回null
+     */
+    public <T> List<T> get(Class<T> clazz, String where, Object[] params) {
+        QueryKey key = new QueryKey(clazz, where, params);
+        long version = this.version(clazz);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && (entry.version != version || entry.isExpired(System.nanoTime()))) {
+                this.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        List<T> list = new ArrayList<>(entry.list.size());
+        for (Object obj : entry.list) {
+            list.add(clazz.cast(metadata.copy(obj)));
+        }
+        return list;
+    }
+
+    /**
+     * 表的当前版本号，查询数据库之前获取，放入缓存时传入
+     *
+     * @param clazz 实体类
+     * @return 版本号
+     */
+    public long version(Class<?> clazz) {
+        // 两个数都只增不减，和不变说明都没有变化
+        return tableVersion(EntityMetadata.of(clazz).getTableName()).get() + epoch.get();
+    }
+
+    /**
+     * 放入缓存。version与当前版本号不一致（查询期间有修改）、在读写事务中、或结果超过内存上限的八分之一时不放入
+     *
+     * @param clazz 实体类
+     * @param where where条件
+     * @param params 参数
+     * @param list 查询结果
+     * @param version 查询数据库之前获取的版本号
+     */
+    public void put(Class<?> clazz, String where, Object[] params, List<?> list, long version) {
+        long expireNanos = expireNanos(clazz);
+        if (expireNanos == DISABLED || list == null || this.version(clazz) != version
+                || SpringTransactions.isWritableTransaction()) {
+            return;
+        }
+        EntityMetadata metadata = EntityMetadata.of(clazz);
+        long size = 64;
+        List<Object> copies = new ArrayList<>(list.size());
+        for (Object obj : list) {
+            size += estimateBytes(metadata, obj);
+            copies.add(metadata.copy(obj));
+        }
+        if (size > maxBytes / 8) {
+            return;
+        }
+        QueryKey key = new QueryKey(clazz, where, copyParams(params));
+        long expireAt = expireNanos == 0 ? 0 : System.nanoTime() + expireNanos;
+        Entry entry = new Entry(Collections.unmodifiableList(copies), version, expireAt, size);
+        synchronized (this) {
+            this.remove(key);
+            entries.put(key, entry);
+            bytes += size;
+            Iterator<Map.Entry<QueryKey, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().getValue().bytes;
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * 实体类对应的表失效
+     *
+     * @param clazz 实体类
+     */
+    public void invalidate(Class<?> clazz) {
+        this.invalidateTable(EntityMetadata.of(clazz).getTableName());
+    }
+
+    /**
+     * 表失效
+     *
+     * @param table 表名
+     */
+    public void invalidateTable(String table) {
+        String tableName = table.toLowerCase(Locale.ROOT);
+        tableVersion(tableName).incrementAndGet();
+        Set<String> pending = SpringTransactions.afterCompletion(this, HashSet::new, this::invalidatePending);
+        if (pending != null) {
+            pending.add(tableName);
+        }
+    }
+
+    /**
+     * 按insert/update/delete语句中的表名失效，解析不出表名时全部失效
+     *
+     * @param sql insert/update/delete语句
+     */
+    public void invalidateBySql(String sql) {
+        String table = CacheSupport.tableOf(sql);
+        if (table == null) {
+            this.invalidateAll();
+        } else {
+            this.invalidateTable(table);
+        }
+    }
+
+    /**
+     * 全部失效
+     */
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+            bytes = 0;
+        }
+        Set<String> pending = SpringTransactions.afterCompletion(this, HashSet::new, this::invalidatePending);
+        if (pending != null) {
+            // 空字符串表示全部
+            pending.add("");
+        }
+    }
+
+    /**
+     * 事务结束后再失效一次，避免事务提交前其它线程读到旧值并放入缓存
+     */
+    private void invalidatePending(Set<String> tables) {
+        if (tables.contains("")) {
+            epoch.incrementAndGet();
+            return;
+        }
+        for (String table : tables) {
+            tableVersion(table).incrementAndGet();
+        }
+    }
+
+    private AtomicLong tableVersion(String table) {
+        String tableName = table.toLowerCase(Locale.ROOT);
+        AtomicLong version = tableVersions.get(tableName);
+        if (version == null) {
+            version = new AtomicLong();
+            AtomicLong exist = tableVersions.putIfAbsent(tableName, version);
+            if (exist != null) {
+                version = exist;
+            }
+        }
+        return version;
+    }
+
+    private long expireNanos(Class<?> clazz) {
+        Long expireNanos = expireMap.get(clazz);
+        if (expireNanos == null) {
+            QueryCache annotation = clazz.getAnnotation(QueryCache.class);
+            long expireSeconds = annotation == null ? 0 : annotation.expireSeconds();
+            expireNanos = annotation == null ? DISABLED : expireSeconds <= 0 ? 0 : TimeUnit.SECONDS.toNanos(expireSeconds);
+            Long exist = expireMap.putIfAbsent(clazz, expireNanos);
+            if (exist != null) {
+                expireNanos = exist;
+            }
+        }
+        return expireNanos;
+    }
+
+    /**
+     * 复制参数，避免调用方修改参数（如Date）后key变化
+     */
+    private static Object[] copyParams(Object[] params) {
+        if (params == null) {
+            return null;
+        }
+        Object[] copy = params.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof Date) {
+                copy[i] = ((Date) copy[i]).clone();
+            }
+        }
+        return copy;
+    }
+
+    /** 调用方已持有锁 */
+    private void remove(QueryKey key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * 估算一个实体占用的字节数
+     */
+    private static long estimateBytes(EntityMetadata metadata, Object obj) {
+        long size = 16;
+        for (EntityColumn column : metadata.getColumns()) {
+            Object value = column.getValue(obj);
+            if (value instanceof CharSequence) {
+                size += 40 + ((CharSequence) value).length() * 2L;
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value != null) {
+                size += 24;
+            }
+            size += 4;
+        }
+        return size;
+    }
+
+    /**
+     * 内存上限（估算的字节数），默认16MB
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes必须大于0");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存结果的估算字节数
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCacheManager{size=" + size() + ", bytes=" + getBytes() + ", maxBytes=" + maxBytes + ", hit="
+                + getHitCount() + ", miss=" + getMissCount() + ", eviction=" + getEvictionCount() + "}";
+    }
+
+    private static final class Entry {
+
+        final List<Object> list;
+        final long version;
+        /** System.nanoTime()，0表示不过期 */
+        final long expireAt;
+        final long bytes;
+
+        Entry(List<Object> list, long version, long expireAt, long bytes) {
+            this.list = list;
+            this.version = version;
+            this.expireAt = expireAt;
+            this.bytes = bytes;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.Arrays;
+
+/**
+ * 查询的key：实体类、规范化的where、参数。用于查询缓存和合并相同的查询
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public final class QueryKey {
+
+    private final Class<?> clazz;
+    private final String where;
+    private final Object[] params;
+    private final int hash;
+
+    /**
+     * @param clazz 实体类
+     * @param where where条件，引号外的空白不影响相等
+     * @param params 参数，不复制，调用方不应再修改
+     */
+    public QueryKey(Class<?> clazz, String where, Object[] params) {
+        this.clazz = clazz;
+        this.where = normalize(where);
+        this.params = params == null ? new Object[0] : params;
+        this.hash = 31 * (31 * clazz.hashCode() + this.where.hashCode()) + Arrays.deepHashCode(this.params);
+    }
+
+    public Class<?> getType() {
+        return clazz;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey key = (QueryKey) o;
+        return clazz == key.clazz && where.equals(key.where) && Arrays.deepEquals(params, key.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return clazz.getSimpleName() + "[" + where + "]" + Arrays.deepToString(params);
+    }
+
+    /**
+     * 去掉首尾空白，引号外的连续空白合并为一个空格
+     */
+    private static String normalize(String where) {
+        if (where == null) {
+            return "";
+        }
+        String trimmed = where.trim();
+        StringBuilder builder = new StringBuilder(trimmed.length());
+        char quote = 0;
+        boolean blank = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                blank = true;
+                continue;
+            }
+            if (blank) {
+                builder.append(' ');
+                blank = false;
+            }
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分段LRU缓存（SLRU），带容量上限、过期时间和命中统计。<br>
+ * 新数据先进入试用区，再次命中后晋升到保护区（占容量的80%），淘汰时先淘汰试用区最久未访问的数据，
+ * 只访问一次的数据（如一次性的批量查询）不会把热点数据挤出缓存。按key的hash分为多个分片，每个分片各自加锁
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class SegmentedLruCache<K, V> {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final List<Stripe> stripes;
+    private final int maxSize;
+    /** 过期时间，小于等于0不过期 */
+    private final long expireNanos;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * @param maxSize 最大条数
+     * @param expireAfterWrite 写入后多久过期，小于等于0不过期
+     * @param unit 时间单位
+     */
+    public SegmentedLruCache(int maxSize, long expireAfterWrite, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize必须大于0");
+        }
+        this.maxSize = maxSize;
+        this.expireNanos = expireAfterWrite <= 0 ? 0 : unit.toNanos(expireAfterWrite);
+        int count = Math.min(MAX_STRIPES, maxSize);
+        List<Stripe> stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // 容量分到各分片，合计不超过maxSize
+            stripes.add(new Stripe(maxSize / count + (i < maxSize % count ? 1 : 0)));
+        }
+        this.stripes = stripes;
+    }
+
+    /**
+     * 获取缓存值
+     *
+     * @param key key
+     * @return 不存在或已过期返回null
+     */
+    public V get(K key) {
+        V value = stripe(key).get(key, expireNanos > 0 ? System.nanoTime() : 0);
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 放入缓存，已存在时覆盖
+     *
+     * @param key key
+     * @param value value
+     */
+    public void put(K key, V value) {
+        long expireAt = expireNanos > 0 ? System.nanoTime() + expireNanos : 0;
+        stripe(key).put(key, value, expireAt);
+    }
+
+    public void remove(K key) {
+        stripe(key).remove(key);
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripe(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes.get((h & 0x7fffffff) % stripes.size());
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 命中率，没有访问时为0
+     */
+    public double getHitRate() {
+        long hit = getHitCount();
+        long total = hit + getMissCount();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentedLruCache{size=" + size() + ", maxSize=" + maxSize + ", hit=" + getHitCount() + ", miss="
+                + getMissCount() + ", eviction=" + getEvictionCount() + ", expiration=" + getExpirationCount() + "}";
+    }
+
+    private static final class Node<V> {
+
+        final V value;
+        /** System.nanoTime()，0表示不过期 */
+        final long expireAt;
+
+        Node(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt >= 0;
+        }
+    }
+
+    /**
+     * 一个分片：试用区按写入顺序，保护区按访问顺序
+     */
+    private final class Stripe {
+
+        private final int capacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<K, Node<V>> protectedMap = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = capacity * 4 / 5;
+        }
+
+        synchronized V get(K key, long now) {
+            Node<V> node = protectedMap.get(key);
+            if (node != null) {
+                if (node.isExpired(now)) {
+                    protectedMap.remove(key);
+                    expirationCount.increment();
+                    return null;
+                }
+                return node.value;
+            }
+            node = probation.remove(key);
+            if (node == null) {
+                return null;
+            }
+            if (node.isExpired(now)) {
+                expirationCount.increment();
+                return null;
+            }
+            // 再次命中，晋升到保护区；保护区满时最久未访问的降回试用区
+            protectedMap.put(key, node);
+            if (protectedMap.size() > protectedCapacity) {
+                Iterator<Map.Entry<K, Node<V>>> iterator = protectedMap.entrySet().iterator();
+                Map.Entry<K, Node<V>> eldest = iterator.next();
+                iterator.remove();
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+            return node.value;
+        }
+
+        synchronized void put(K key, V value, long expireAt) {
+            Node<V> node = new Node<>(value, expireAt);
+            if (protectedMap.containsKey(key)) {
+                protectedMap.put(key, node);
+                return;
+            }
+            probation.put(key, node);
+            while (probation.size() + protectedMap.size() > capacity) {
+                Iterator<K> iterator = (probation.isEmpty() ? protectedMap : probation).keySet().iterator();
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+
+        synchronized void remove(K key) {
+            if (protectedMap.remove(key) == null) {
+                probation.remove(key);
+            }
+        }
+
+        synchronized void clear() {
+            probation.clear();
+            protectedMap.clear();
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedMap.size();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package me.ly.tools.mybatis.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import me.ly.tools.mybatis.utils.SpringTransactions;
+
+/**
+ * 合并相同key的并发调用：同一时刻只有第一个线程执行，其它线程等待并共用它的结果。<br>
+ * 结果被共用时每个调用方拿到的都是副本，互相修改不影响；没有其它线程等待时直接返回原结果。
+ * 在读写事务中不合并，避免把未提交的数据交给其它线程。<br>
+ * 带版本号时只合并版本号相同的调用：查询开始后有修改的，结果不能交给修改之后开始的调用放入缓存
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder executionCount = new LongAdder();
+    private final LongAdder sharedCount = new LongAdder();
+
+    /**
+     * 执行，相同key正在执行时等待其结果
+     *
+     * @param key key
+     * @param loader 执行
+     * @param copier 复制结果
+     * @return 结果
+     */
+    public V execute(K key, Supplier<? extends V> loader, UnaryOperator<V> copier) {
+        return this.execute(key, 0, loader, copier);
+    }
+
+    /**
+     * 执行，相同key、相同版本号正在执行时等待其结果
+     *
+     * @param key key
+     * @param version 调用方查询前获取的缓存版本号，只增不减
+     * @param loader 执行
+     * @param copier 复制结果
+     * @return 结果
+     */
+    public V execute(K key, long version, Supplier<? extends V> loader, UnaryOperator<V> copier) {
+        if (SpringTransactions.isWritableTransaction()) {
+            return loader.get();
+        }
+        Call<V> call = new Call<>(version);
+        while (true) {
+            Call<V> inFlight = calls.putIfAbsent(key, call);
+            if (inFlight == null) {
+                break;
+            }
+            if (inFlight.version != version) {
+                // 正在执行的查询版本较旧时替换它，之后的调用合并到本次；否则单独执行
+                if (inFlight.version < version && calls.replace(key, inFlight, call)) {
+                    break;
+                }
+                executionCount.increment();
+                return loader.get();
+            }
+            if (inFlight.join()) {
+                sharedCount.increment();
+                V value = inFlight.await();
+                return value == null ? null : copier.apply(value);
+            }
+            // 执行线程已经返回了原结果，不能再共用，重新执行
+            calls.remove(key, inFlight);
+        }
+        executionCount.increment();
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            calls.remove(key, call);
+            call.future.completeExceptionally(e);
+            throw e;
+        }
+        calls.remove(key, call);
+        call.future.complete(value);
+        // 没有线程共用时返回原结果，否则返回副本，保证共用的结果没有被修改
+        return call.close() || value == null ? value : copier.apply(value);
+    }
+
+    /**
+     * 实际执行的次数
+     */
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    /**
+     * 共用其它线程结果的次数
+     */
+    public long getSharedCount() {
+        return sharedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{inFlight=" + calls.size() + ", execution=" + getExecutionCount() + ", shared="
+                + getSharedCount() + "}";
+    }
+
+    private static final class Call<V> {
+
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        /** 等待的线程数，-1表示已关闭 */
+        final AtomicInteger waiters = new AtomicInteger();
+        /** 执行线程开始时的版本号 */
+        final long version;
+
+        Call(long version) {
+            this.version = version;
+        }
+
+        /**
+         * 加入等待
+         *
+         * @return 已关闭返回false
+         */
+        boolean join() {
+            while (true) {
+                int count = waiters.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (waiters.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 关闭，之后不能再加入等待
+         *
+         * @return 没有线程等待返回true
+         */
+        boolean close() {
+            return waiters.compareAndSet(0, -1);
+        }
+
+        V await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -2,11 +2,15 @@ package me.ly.tools.mybatis.dao;
 
 import me.ly.tools.mybatis.entity.Pagination;
 import me.ly.tools.mybatis.mybatis.CRUDTemplate;
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
 import me.ly.tools.mybatis.mybatis.annotation.ResultIntercept;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 通用 增、删、改、查 Mapper接口
@@ -29,6 +33,21 @@ public interface BaseMapper {
     @SelectProvider(type = CRUDTemplate.class, method = "select")
     <T> List<T> selectAll(@Param("returnTypeClass") Class<T> clazz, @Param("where") String where, @Param("params") Object... params);
 
+    /**
+     * 根据条件流式查询，每一行映射后交给handler，不在内存中保存结果集
+     *
+     * @param clazz 对象类型
+     * @param fetchSize 每次从数据库读取的行数，为null时按数据库选择（Mysql为Integer.MIN_VALUE，即逐行读取）
+     * @param where 查询条件，支持?占位符。
+     * @param params 参数值。与?占位符一一对应
+     * @param handler 处理每一行
+     */
+    @SelectProvider(type = CRUDTemplate.class, method = "select")
+    @ResultType(Object.class)
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY)
+    <T> void selectStream(@Param("returnTypeClass") Class<T> clazz, @Param(MyBatisUtil.KEY_STREAM_FETCH_SIZE) Integer fetchSize,
+            @Param("where") String where, @Param("params") Object[] params, ResultHandler handler);
+
     /**
      * 根据ID查询实体类
      *
@@ -39,6 +58,16 @@ public interface BaseMapper {
     @SelectProvider(type = CRUDTemplate.class, method = "selectById")
     <T> List<T> selectById(@Param("returnTypeClass") Class<T> clazz, @Param("id") Object id);
 
+    /**
+     * 根据多个ID查询，ID IN (...)
+     *
+     * @param clazz
+     * @param ids ID数组（Object[]或long[]），长度不超过1000
+     * @return
+     */
+    @SelectProvider(type = CRUDTemplate.class, method = "selectByIds")
+    <T> List<T> selectByIds(@Param("returnTypeClass") Class<T> clazz, @Param("ids") Object ids);
+
     /**
      * 根据条件查询全部（分页），实体类包含子类的不支持
      *
@@ -89,6 +118,9 @@ public interface BaseMapper {
     @UpdateProvider(type = CRUDTemplate.class, method = "update")
     <T> int update(@Param("bean") T obj, @Param("ignoreNull") boolean ignoreNull, @Param("ignoreEmpty") boolean ignoreEmpty);
 
+    @SelectProvider(type = CRUDTemplate.class, method = "refactorSql")
+    List<Map<String, Object>> executeSelect(@Param("sql") String sql, @Param("params") Object... param);
+
     @InsertProvider(type = CRUDTemplate.class, method = "refactorSql")
     int executeInsert(@Param("sql") String sql, @Param("params") Object... param);
 
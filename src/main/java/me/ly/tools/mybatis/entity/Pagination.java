@@ -1,14 +1,18 @@
 package me.ly.tools.mybatis.entity;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.alibaba.fastjson.JSON;
 
 /**
- * 分页实体类
+ * 分页实体类<br>
+ * 设置了游标排序字段（addSeekColumn）时为游标分页：按排序字段取上一页最后一行之后的数据，不使用偏移量，翻到多深的页耗时都一样。
+ * 翻页时把getNextToken()返回给客户端，下一次请求通过setSeekToken()传回
  *
  * @author Created by LiYao on 2017-03-04 20:54.
  */
@@ -25,6 +29,16 @@ public class Pagination {
 
 	private int offset;// 偏移量
 
+	private static final Pattern SEEK_COLUMN_PATTERN = Pattern.compile("[A-Za-z0-9_.]+");
+
+	private CountStrategy countStrategy = CountStrategy.EXACT;// 总条数统计方式
+	private boolean hasNext;// 是否存在下一页
+	private boolean totalEstimated;// 总条数是否为估算值
+
+	private List<SeekColumn> seekColumns;// 游标分页排序字段
+	private Object[] seekValues;// 上一页最后一行的排序字段值
+	private String nextToken;// 下一页令牌
+
 	public int getOffset() {
 		return (this.getPageIndex() - 1) * this.getPageSize();
 	}
@@ -136,11 +150,68 @@ public class Pagination {
 	 */
 	public void setTotalCount(int totalCount) {
 		this.totalCount = totalCount;
+		this.totalEstimated = false;
 		this.pageCount = (this.totalCount + this.pageSize - 1) / this.pageSize;
 		this.setPageIndex(String.valueOf(this.pageIndex));
 		this.setBeginAndEnd(this.pageIndex);
 	}
 
+	/**
+	 * 设置估算的总条数。估算值可能偏小，不据此修正当前页
+	 *
+	 * @param totalCount
+	 */
+	public void setEstimatedTotalCount(int totalCount) {
+		this.totalCount = totalCount;
+		this.totalEstimated = true;
+		this.pageCount = (this.totalCount + this.pageSize - 1) / this.pageSize;
+		this.setBeginAndEnd(this.pageIndex);
+	}
+
+	/**
+	 * 总条数是否为估算值（CountStrategy.ESTIMATE）
+	 *
+	 * @return boolean
+	 */
+	public boolean isTotalEstimated() {
+		return totalEstimated;
+	}
+
+	/**
+	 * 总条数统计方式，默认EXACT
+	 *
+	 * @return CountStrategy
+	 */
+	public CountStrategy getCountStrategy() {
+		return countStrategy;
+	}
+
+	public void setCountStrategy(CountStrategy countStrategy) {
+		this.countStrategy = countStrategy == null ? CountStrategy.EXACT : countStrategy;
+	}
+
+	/**
+	 * 是否存在下一页，由分页拦截器在查询后设置
+	 *
+	 * @return boolean
+	 */
+	public boolean isHasNext() {
+		return hasNext;
+	}
+
+	public void setHasNext(boolean hasNext) {
+		this.hasNext = hasNext;
+	}
+
+	/**
+	 * 分页SQL实际查询的行数。HAS_NEXT时多查一行用于判断是否存在下一页
+	 *
+	 * @return 行数
+	 */
+	public int getRowLimit() {
+		return countStrategy == CountStrategy.HAS_NEXT ? pageSize + 1 : pageSize;
+	}
+
 	/**
 	 * 数据总条数
 	 * 
@@ -194,6 +265,163 @@ public class Pagination {
 		return this.pageIndex - 1 < 1 ? 1 : this.pageIndex - 1;
 	}
 
+	/**
+	 * 添加游标分页排序字段（升序）
+	 *
+	 * @param column
+	 *            数据库字段名，可带表别名
+	 * @return this
+	 */
+	public Pagination addSeekColumn(String column) {
+		return this.addSeekColumn(column, false);
+	}
+
+	/**
+	 * 添加游标分页排序字段。<br>
+	 * 排序字段的组合必须唯一且不能为null，通常最后一个字段使用主键
+	 *
+	 * @param column
+	 *            数据库字段名，可带表别名
+	 * @param desc
+	 *            是否降序
+	 * @return this
+	 */
+	public Pagination addSeekColumn(String column, boolean desc) {
+		if (column == null || !SEEK_COLUMN_PATTERN.matcher(column).matches()) {
+			throw new IllegalArgumentException("非法的排序字段：" + column);
+		}
+		if (this.seekColumns == null) {
+			this.seekColumns = new ArrayList<>(2);
+		}
+		this.seekColumns.add(new SeekColumn(column, desc));
+		return this;
+	}
+
+	/**
+	 * 游标分页排序字段
+	 *
+	 * @return List<SeekColumn>
+	 */
+	public List<SeekColumn> getSeekColumns() {
+		return seekColumns == null ? Collections.<SeekColumn> emptyList() : Collections.unmodifiableList(seekColumns);
+	}
+
+	/**
+	 * 是否游标分页
+	 *
+	 * @return boolean
+	 */
+	public boolean isSeekMode() {
+		return seekColumns != null && !seekColumns.isEmpty();
+	}
+
+	/**
+	 * 从指定的排序字段值之后开始查询，顺序与排序字段一致
+	 *
+	 * @param values
+	 *            上一页最后一行的排序字段值，为空时查询第一页
+	 */
+	public void seekAfter(Object... values) {
+		if (values == null || values.length == 0) {
+			this.seekValues = null;
+			return;
+		}
+		for (Object value : values) {
+			if (value == null) {
+				throw new IllegalArgumentException("游标分页排序字段值不能为null");
+			}
+		}
+		this.seekValues = values.clone();
+	}
+
+	/**
+	 * 上一页最后一行的排序字段值，第一页为null
+	 *
+	 * @return Object[]
+	 */
+	public Object[] getSeekValues() {
+		return seekValues;
+	}
+
+	/**
+	 * 设置翻页令牌，为空时查询第一页
+	 *
+	 * @param token
+	 *            上一次查询返回的getNextToken()
+	 */
+	public void setSeekToken(String token) {
+		this.seekAfter(StringUtils.isBlank(token) ? null : SeekToken.decode(token));
+	}
+
+	/**
+	 * 下一页令牌，没有下一页时为null
+	 *
+	 * @return String
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	/**
+	 * 设置本页最后一行的排序字段值，由分页拦截器在查询后调用
+	 *
+	 * @param values
+	 *            排序字段值，null表示没有下一页
+	 */
+	public void setNextSeekValues(Object... values) {
+		this.nextToken = values == null ? null : SeekToken.encode(values);
+	}
+
+	/**
+	 * 游标分页翻到下一页，用于服务端连续翻页
+	 *
+	 * @return 是否存在下一页
+	 */
+	public boolean toNextSeekPage() {
+		if (this.nextToken == null) {
+			return false;
+		}
+		this.setSeekToken(this.nextToken);
+		this.nextToken = null;
+		return true;
+	}
+
+	/**
+	 * 总条数统计方式
+	 */
+	public enum CountStrategy {
+		/** 执行COUNT(*)，精确统计 */
+		EXACT,
+		/** 不统计 */
+		NONE,
+		/** 不统计，多查一行判断是否存在下一页，见isHasNext() */
+		HAS_NEXT,
+		/** 使用数据库执行计划中的估算行数，不支持的数据库使用EXACT */
+		ESTIMATE
+	}
+
+	/**
+	 * 游标分页排序字段
+	 */
+	public static final class SeekColumn {
+
+		private final String column;
+		private final boolean desc;
+
+		SeekColumn(String column, boolean desc) {
+			this.column = column;
+			this.desc = desc;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		public boolean isDesc() {
+			return desc;
+		}
+	}
+
 	@Override
 	public String toString() {
 		return JSON.toJSONString(this);
@@ -0,0 +1,121 @@
+package me.ly.tools.mybatis.entity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+
+/**
+ * 游标分页的翻页令牌。<br>
+ * 将上一页最后一行的排序字段值编码为不透明的字符串，每个值带上类型标记，解码后绑定到SQL时类型不变。
+ */
+final class SeekToken {
+
+    private SeekToken() {
+    }
+
+    /**
+     * 编码排序字段值
+     *
+     * @param values 排序字段值
+     * @return 令牌
+     */
+    static String encode(Object[] values) {
+        JSONArray array = new JSONArray(values.length);
+        for (Object value : values) {
+            JSONArray item = new JSONArray(2);
+            if (value instanceof Timestamp) {
+                // getTime()只到毫秒，Timestamp的纳秒部分要保留，否则同一毫秒内的行会被重复或跳过
+                item.add("t");
+                item.add(((Timestamp) value).toInstant().toString());
+            } else if (value instanceof Date) {
+                item.add("d");
+                item.add(((Date) value).getTime());
+            } else if (value instanceof LocalDateTime || value instanceof LocalDate || value instanceof Instant) {
+                item.add(value instanceof LocalDateTime ? "ldt" : value instanceof LocalDate ? "ld" : "i");
+                item.add(value.toString());
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                item.add("n");
+                item.add(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                item.add("l");
+                item.add(value);
+            } else if (value instanceof BigDecimal || value instanceof BigInteger || value instanceof Double
+                    || value instanceof Float) {
+                item.add("b");
+                item.add(value.toString());
+            } else if (value instanceof Boolean) {
+                item.add("z");
+                item.add(value);
+            } else {
+                item.add("s");
+                item.add(String.valueOf(value));
+            }
+            array.add(item);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(array.toJSONString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码令牌
+     *
+     * @param token 令牌
+     * @return 排序字段值
+     */
+    static Object[] decode(String token) {
+        JSONArray array;
+        try {
+            array = JSON.parseArray(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("非法的翻页令牌：" + token, e);
+        }
+        Object[] values = new Object[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            JSONArray item = array.getJSONArray(i);
+            String type = item.getString(0);
+            switch (type) {
+            case "d":
+                values[i] = new Timestamp(item.getLongValue(1));
+                break;
+            case "t":
+                values[i] = Timestamp.from(Instant.parse(item.getString(1)));
+                break;
+            case "ldt":
+                values[i] = Timestamp.valueOf(LocalDateTime.parse(item.getString(1)));
+                break;
+            case "ld":
+                values[i] = java.sql.Date.valueOf(LocalDate.parse(item.getString(1)));
+                break;
+            case "i":
+                values[i] = Timestamp.from(Instant.parse(item.getString(1)));
+                break;
+            case "n":
+                values[i] = item.getIntValue(1);
+                break;
+            case "l":
+                values[i] = item.getLongValue(1);
+                break;
+            case "b":
+                values[i] = new BigDecimal(item.getString(1));
+                break;
+            case "z":
+                values[i] = item.getBooleanValue(1);
+                break;
+            case "s":
+                values[i] = item.getString(1);
+                break;
+            default:
+                throw new IllegalArgumentException("非法的翻页令牌：" + token);
+            }
+        }
+        return values;
+    }
+}
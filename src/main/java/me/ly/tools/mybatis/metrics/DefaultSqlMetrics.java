@@ -0,0 +1,190 @@
+package me.ly.tools.mybatis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 默认的SqlMetrics，不依赖第三方库。<br>
+ * 按(MappedStatement id, 实体类)保存计数（LongAdder）和直方图（Histogram），第一次出现时创建，之后记录不分配对象。
+ * 通过getStatements拉取快照，或调用registerMBean注册到JMX
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class DefaultSqlMetrics implements SqlMetrics, SqlMetricsMXBean {
+
+    /** 默认的JMX名称 */
+    public static final String OBJECT_NAME = "me.ly.tools.mybatis:type=SqlMetrics";
+
+    /** 实体类未知时使用的key */
+    private static final Class<?> NO_ENTITY = Void.class;
+
+    /** Map&lt;MappedStatement id, Map&lt;实体类, 指标>> */
+    private volatile ConcurrentMap<String, ConcurrentMap<Class<?>, Stats>> statements = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordSqlGeneration(String statementId, Class<?> entity, long nanos) {
+        stats(statementId, entity).histogram(Stats.SQL_GENERATION).record(nanos);
+    }
+
+    @Override
+    public void recordCountQuery(String statementId, Class<?> entity, long nanos) {
+        stats(statementId, entity).histogram(Stats.COUNT_QUERY).record(nanos);
+    }
+
+    @Override
+    public void recordExecution(String statementId, Class<?> entity, long nanos) {
+        stats(statementId, entity).histogram(Stats.EXECUTION).record(nanos);
+    }
+
+    @Override
+    public void recordMapping(String statementId, Class<?> entity, int rows, long nanos) {
+        Stats stats = stats(statementId, entity);
+        stats.histogram(Stats.MAPPING).record(nanos);
+        stats.histogram(Stats.ROWS).record(rows);
+    }
+
+    @Override
+    public void recordCacheAccess(String statementId, Class<?> entity, boolean hit) {
+        Stats stats = stats(statementId, entity);
+        if (hit) {
+            stats.cacheHits.increment();
+        } else {
+            stats.cacheMisses.increment();
+        }
+    }
+
+    @Override
+    public void recordError(String statementId, Class<?> entity) {
+        stats(statementId, entity).errors.increment();
+    }
+
+    private Stats stats(String statementId, Class<?> entity) {
+        Class<?> key = entity == null ? NO_ENTITY : entity;
+        ConcurrentMap<String, ConcurrentMap<Class<?>, Stats>> statements = this.statements;
+        ConcurrentMap<Class<?>, Stats> entities = statements.get(statementId);
+        if (entities == null) {
+            entities = new ConcurrentHashMap<>();
+            ConcurrentMap<Class<?>, Stats> exist = statements.putIfAbsent(statementId, entities);
+            if (exist != null) {
+                entities = exist;
+            }
+        }
+        Stats stats = entities.get(key);
+        if (stats == null) {
+            stats = new Stats();
+            Stats exist = entities.putIfAbsent(key, stats);
+            if (exist != null) {
+                stats = exist;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public List<StatementSnapshot> getStatements() {
+        List<StatementSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<Class<?>, Stats>> statement : statements.entrySet()) {
+            for (Map.Entry<Class<?>, Stats> entity : statement.getValue().entrySet()) {
+                snapshots.add(entity.getValue().snapshot(statement.getKey(), entity.getKey()));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 指定语句和实体类的快照
+     *
+     * @param statementId MappedStatement id
+     * @param entity 实体类，为null时返回实体类未知的指标
+     * @return 没有记录过返回null
+     */
+    public StatementSnapshot getStatement(String statementId, Class<?> entity) {
+        Map<Class<?>, Stats> entities = statements.get(statementId);
+        Class<?> key = entity == null ? NO_ENTITY : entity;
+        Stats stats = entities == null ? null : entities.get(key);
+        return stats == null ? null : stats.snapshot(statementId, key);
+    }
+
+    @Override
+    public void reset() {
+        statements = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 以OBJECT_NAME注册到平台MBeanServer，已注册时替换
+     */
+    public void registerMBean() {
+        this.registerMBean(OBJECT_NAME);
+    }
+
+    /**
+     * 注册到平台MBeanServer，已注册时替换
+     *
+     * @param objectName JMX名称
+     */
+    public void registerMBean(String objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("注册SqlMetrics失败：" + objectName, e);
+        }
+    }
+
+    /**
+     * 一个(MappedStatement id, 实体类)的指标。直方图第一次使用时创建，大部分语句用不到全部直方图
+     */
+    private static final class Stats {
+
+        static final int SQL_GENERATION = 0;
+        static final int COUNT_QUERY = 1;
+        static final int EXECUTION = 2;
+        static final int MAPPING = 3;
+        static final int ROWS = 4;
+
+        final Histogram[] histograms = new Histogram[5];
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder cacheMisses = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Histogram histogram(int index) {
+            Histogram histogram = histograms[index];
+            if (histogram == null) {
+                synchronized (this) {
+                    histogram = histograms[index];
+                    if (histogram == null) {
+                        histogram = new Histogram();
+                        histograms[index] = histogram;
+                    }
+                }
+            }
+            return histogram;
+        }
+
+        HistogramSnapshot snapshot(int index) {
+            Histogram histogram;
+            synchronized (this) {
+                histogram = histograms[index];
+            }
+            return histogram == null ? HistogramSnapshot.EMPTY : histogram.snapshot();
+        }
+
+        StatementSnapshot snapshot(String statementId, Class<?> entity) {
+            return new StatementSnapshot(statementId, entity == NO_ENTITY ? "" : entity.getName(),
+                    snapshot(SQL_GENERATION), snapshot(COUNT_QUERY), snapshot(EXECUTION), snapshot(MAPPING),
+                    snapshot(ROWS), cacheHits.sum(), cacheMisses.sum(), errors.sum());
+        }
+    }
+}
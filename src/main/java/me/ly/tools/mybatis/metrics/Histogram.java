@@ -0,0 +1,112 @@
+package me.ly.tools.mybatis.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的直方图（与HdrHistogram相同的思路）。<br>
+ * 每个2的幂区间分为8个桶，相对误差不超过12.5%，可记录0到2^41（纳秒约36分钟），更大的值记入最后一个桶。
+ * 记录时无锁、不分配对象，数量和总和使用LongAdder
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，小于0按0记录
+     *
+     * @param value 值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 当前数据的快照。记录与快照并发时各项之间可能有少量不一致
+     */
+    public HistogramSnapshot snapshot() {
+        long total = count.sum();
+        if (total == 0) {
+            return HistogramSnapshot.EMPTY;
+        }
+        long[] counts = new long[BUCKETS];
+        long bucketTotal = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            bucketTotal += counts[i];
+        }
+        long maxValue = max.get();
+        return new HistogramSnapshot(total, sum.sum() / total, percentile(counts, bucketTotal, 0.5, maxValue),
+                percentile(counts, bucketTotal, 0.9, maxValue), percentile(counts, bucketTotal, 0.99, maxValue), maxValue);
+    }
+
+    /**
+     * 百分位数，取所在桶的上界，不超过最大值
+     */
+    private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+        long target = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
@@ -0,0 +1,35 @@
+package me.ly.tools.mybatis.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * 当前使用的SqlMetrics。<br>
+ * 启动时从ServiceLoader加载第一个SqlMetrics实现，没有时使用DefaultSqlMetrics；设置为SqlMetrics.NOOP关闭记录
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public final class Metrics {
+
+    private static volatile SqlMetrics current = load();
+
+    private Metrics() {
+    }
+
+    public static SqlMetrics get() {
+        return current;
+    }
+
+    /**
+     * 设置SqlMetrics
+     *
+     * @param metrics 为null时不记录
+     */
+    public static void set(SqlMetrics metrics) {
+        current = metrics == null ? SqlMetrics.NOOP : metrics;
+    }
+
+    private static SqlMetrics load() {
+        Iterator<SqlMetrics> iterator = ServiceLoader.load(SqlMetrics.class, Metrics.class.getClassLoader()).iterator();
+        return iterator.hasNext() ? iterator.next() : new DefaultSqlMetrics();
+    }
+}
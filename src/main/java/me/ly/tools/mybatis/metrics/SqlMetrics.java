@@ -0,0 +1,71 @@
+package me.ly.tools.mybatis.metrics;
+
+/**
+ * SQL指标记录接口（SPI）。<br>
+ * 拦截器和BaseServiceImpl在每次调用时按(MappedStatement id, 实体类)记录耗时、行数和缓存命中，实现类需要线程安全，且不应在记录时分配对象。
+ * 通过Metrics.set设置，或在META-INF/services/me.ly.tools.mybatis.metrics.SqlMetrics中声明，未声明时使用DefaultSqlMetrics。
+ * 耗时单位均为纳秒，实体类未知时为null
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public interface SqlMetrics {
+
+    /** 不记录 */
+    SqlMetrics NOOP = new SqlMetrics() {
+
+        @Override
+        public void recordSqlGeneration(String statementId, Class<?> entity, long nanos) {
+        }
+
+        @Override
+        public void recordCountQuery(String statementId, Class<?> entity, long nanos) {
+        }
+
+        @Override
+        public void recordExecution(String statementId, Class<?> entity, long nanos) {
+        }
+
+        @Override
+        public void recordMapping(String statementId, Class<?> entity, int rows, long nanos) {
+        }
+
+        @Override
+        public void recordCacheAccess(String statementId, Class<?> entity, boolean hit) {
+        }
+
+        @Override
+        public void recordError(String statementId, Class<?> entity) {
+        }
+    };
+
+    /**
+     * CRUDTemplate生成SQL（含解析#{...}）的耗时
+     */
+    void recordSqlGeneration(String statementId, Class<?> entity, long nanos);
+
+    /**
+     * 分页统计总条数（COUNT或估算）的耗时
+     */
+    void recordCountQuery(String statementId, Class<?> entity, long nanos);
+
+    /**
+     * Executor执行语句的耗时，包含SQL生成和结果映射
+     */
+    void recordExecution(String statementId, Class<?> entity, long nanos);
+
+    /**
+     * 结果映射的行数和耗时，耗时包含从驱动读取结果集
+     */
+    void recordMapping(String statementId, Class<?> entity, int rows, long nanos);
+
+    /**
+     * 实体缓存、查询缓存的访问
+     *
+     * @param hit 是否命中
+     */
+    void recordCacheAccess(String statementId, Class<?> entity, boolean hit);
+
+    /**
+     * 执行失败，或分页统计总条数失败
+     */
+    void recordError(String statementId, Class<?> entity);
+}
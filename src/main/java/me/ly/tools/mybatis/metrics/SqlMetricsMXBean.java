@@ -0,0 +1,20 @@
+package me.ly.tools.mybatis.metrics;
+
+import java.util.List;
+
+/**
+ * DefaultSqlMetrics的JMX接口
+ */
+@SuppressWarnings({ "JavaDoc", "unused" })
+public interface SqlMetricsMXBean {
+
+    /**
+     * 所有(MappedStatement id, 实体类)的指标快照
+     */
+    List<StatementSnapshot> getStatements();
+
+    /**
+     * 清空所有指标
+     */
+    void reset();
+}
@@ -0,0 +1,91 @@
+package me.ly.tools.mybatis.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 一个(MappedStatement id, 实体类)的指标快照，耗时单位为纳秒
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public final class StatementSnapshot {
+
+    private final String statementId;
+    private final String entity;
+    private final HistogramSnapshot sqlGeneration;
+    private final HistogramSnapshot countQuery;
+    private final HistogramSnapshot execution;
+    private final HistogramSnapshot mapping;
+    private final HistogramSnapshot rows;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final long errors;
+
+    @ConstructorProperties({ "statementId", "entity", "sqlGeneration", "countQuery", "execution", "mapping", "rows",
+            "cacheHits", "cacheMisses", "errors" })
+    public StatementSnapshot(String statementId, String entity, HistogramSnapshot sqlGeneration,
+            HistogramSnapshot countQuery, HistogramSnapshot execution, HistogramSnapshot mapping, HistogramSnapshot rows,
+            long cacheHits, long cacheMisses, long errors) {
+        this.statementId = statementId;
+        this.entity = entity;
+        this.sqlGeneration = sqlGeneration;
+        this.countQuery = countQuery;
+        this.execution = execution;
+        this.mapping = mapping;
+        this.rows = rows;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.errors = errors;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    /**
+     * 实体类名，未知时为空字符串
+     */
+    public String getEntity() {
+        return entity;
+    }
+
+    public HistogramSnapshot getSqlGeneration() {
+        return sqlGeneration;
+    }
+
+    public HistogramSnapshot getCountQuery() {
+        return countQuery;
+    }
+
+    public HistogramSnapshot getExecution() {
+        return execution;
+    }
+
+    public HistogramSnapshot getMapping() {
+        return mapping;
+    }
+
+    /**
+     * 每次映射的行数
+     */
+    public HistogramSnapshot getRows() {
+        return rows;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementSnapshot{statementId=" + statementId + ", entity=" + entity + ", sqlGeneration=" + sqlGeneration
+                + ", countQuery=" + countQuery + ", execution=" + execution + ", mapping=" + mapping + ", rows=" + rows
+                + ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + ", errors=" + errors + "}";
+    }
+}
@@ -1,11 +1,15 @@
 package me.ly.tools.mybatis.mybatis;
 
+import me.ly.tools.mybatis.utils.BoundedCache;
 import me.ly.tools.mybatis.utils.ReflectUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.ibatis.jdbc.SQL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +23,21 @@ public class CRUDTemplate {
 
     private static Logger logger = LoggerFactory.getLogger(CRUDTemplate.class);
 
+    /**
+     * 生成的SQL缓存。MyBatis每次调用都会创建新的CRUDTemplate，所以缓存是静态的。<br>
+     * Key为（实体类，操作，where模板/字段组合），相同形态的SQL只生成一次
+     */
+    private static final BoundedCache<SqlKey, String> SQL_CACHE = new BoundedCache<>(2048);
+
+    /**
+     * SQL缓存，用于查看命中率或调整容量
+     *
+     * @return BoundedCache
+     */
+    public static BoundedCache<?, String> getSqlCache() {
+        return SQL_CACHE;
+    }
+
     /**
      * select sql
      *
@@ -26,9 +45,19 @@ public class CRUDTemplate {
      * @return
      */
     public String select(Map<?, ?> map) {
-        SQL sql = new SQL();
-        sql.SELECT("*").FROM(ReflectUtil.tableName((Class<?>) map.get("returnTypeClass")));
+        Class<?> clazz = (Class<?>) map.get("returnTypeClass");
         String where = (String) map.get("where");
+        SqlKey key = new SqlKey(clazz, "select", where);
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildSelect(clazz, where));
+        }
+        return sql;
+    }
+
+    private String buildSelect(Class<?> clazz, String where) {
+        SQL sql = new SQL();
+        sql.SELECT("*").FROM(ReflectUtil.tableName(clazz));
         if (null == where || where.trim().length() <= 0) {
             return sql.toString();
         }
@@ -70,11 +99,21 @@ public class CRUDTemplate {
      * @return String
      */
     public String selectById(Map<?, ?> map) {
-        SQL sql = new SQL();
         Class<?> clazz = (Class<?>) map.get("returnTypeClass");
-        sql.SELECT("*").FROM(ReflectUtil.tableName(clazz));
         Object id = map.get("id");
-        if (null == id || "".equals(id)) {
+        boolean emptyId = null == id || "".equals(id);
+        SqlKey key = new SqlKey(clazz, "selectById", emptyId);
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildSelectById(clazz, emptyId));
+        }
+        return sql;
+    }
+
+    private String buildSelectById(Class<?> clazz, boolean emptyId) {
+        SQL sql = new SQL();
+        sql.SELECT("*").FROM(ReflectUtil.tableName(clazz));
+        if (emptyId) {
             return sql.toString();
         }
         Map<String, String> columnMap = ReflectUtil.id(clazz);
@@ -82,6 +121,36 @@ public class CRUDTemplate {
         return sql.toString();
     }
 
+    /**
+     * selectByIds sql，ids为数组，按数组长度缓存
+     *
+     * @param map
+     * @return String
+     */
+    public String selectByIds(Map<?, ?> map) {
+        Class<?> clazz = (Class<?>) map.get("returnTypeClass");
+        int size = Array.getLength(map.get("ids"));
+        SqlKey key = new SqlKey(clazz, "selectByIds", size);
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildSelectByIds(clazz, size));
+        }
+        return sql;
+    }
+
+    private String buildSelectByIds(Class<?> clazz, int size) {
+        String idColumn = ReflectUtil.id(clazz).get(MyBatisUtil.KEY_ID_COLUMN);
+        StringBuilder sql = new StringBuilder(64 + size * 12);
+        sql.append("SELECT * FROM ").append(ReflectUtil.tableName(clazz)).append(" WHERE ").append(idColumn).append(" IN (");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append("#{ids[").append(i).append("]}");
+        }
+        return sql.append(')').toString();
+    }
+
     /**
      * insert sql
      *
@@ -92,10 +161,20 @@ public class CRUDTemplate {
         if (obj == null) {
             return "";
         }
+        Map<String, String> map = MyBatisUtil.insertColumns(obj);
+        // insertColumns 只有两种结果：主键有值/无值
+        SqlKey key = new SqlKey(obj.getClass(), "insert", map.containsKey(MyBatisUtil.KEY_ID_FIELD));
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildInsert(obj.getClass(), map));
+        }
+        return sql;
+    }
+
+    private String buildInsert(Class<?> clazz, Map<String, String> map) {
         SQL sql = new SQL();
-        sql.INSERT_INTO(ReflectUtil.tableName(obj.getClass()));
+        sql.INSERT_INTO(ReflectUtil.tableName(clazz));
 
-        Map<String, String> map = MyBatisUtil.insertColumns(obj);
         for (Map.Entry<String, String> m : map.entrySet()) {
             if (MyBatisUtil.KEY_ID_FIELD.equals(m.getKey())) {
                 continue;
@@ -107,7 +186,8 @@ public class CRUDTemplate {
 
     /**
      * insertList sql。 <br>
-     * 该方法目前仅支持“INSERT INTO user (column1,column2,column3) VALUES (?,?,?),(?,?,?)”Sql样式的数据库
+     * 该方法目前仅支持“INSERT INTO user (column1,column2,column3) VALUES (?,?,?),(?,?,?)”Sql样式的数据库<br>
+     * 只缓存行数为2的幂的SQL（BaseServiceImpl分段插入时按2的幂拆分），其它行数每次生成，避免每种行数的大SQL都留在缓存中
      *
      * @param map
      * @return
@@ -119,28 +199,57 @@ public class CRUDTemplate {
         }
 
         Map<String, String> columnMap = MyBatisUtil.insertColumns(list.get(0));
+        int size = list.size();
+        SqlKey key = new SqlKey(list.get(0).getClass(), "insertList",
+                columnMap.containsKey(MyBatisUtil.KEY_ID_FIELD) ? -size : size);
+        if (!isCachedInsertListSize(size)) {
+            return buildInsertList(list.get(0).getClass(), columnMap, size);
+        }
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildInsertList(list.get(0).getClass(), columnMap, size));
+        }
+        return sql;
+    }
 
-        StringBuilder columnName = new StringBuilder();
-        StringBuilder columnValue = new StringBuilder();
+    /**
+     * 该行数的insertList SQL是否缓存（包括CachingProviderSqlSource的解析结果）
+     *
+     * @param size 行数
+     * @return 行数为2的幂时缓存
+     */
+    public static boolean isCachedInsertListSize(int size) {
+        return Integer.bitCount(size) == 1;
+    }
 
+    private String buildInsertList(Class<?> clazz, Map<String, String> columnMap, int size) {
+        String tableName = ReflectUtil.tableName(clazz);
+        List<String> fieldNames = new ArrayList<>(columnMap.size());
+        StringBuilder columnName = new StringBuilder();
+        // 每行占位符的长度，不含下标
+        int rowLength = 2;
         for (Map.Entry<String, String> m : columnMap.entrySet()) {
             if (MyBatisUtil.KEY_ID_FIELD.equals(m.getKey())) {
                 continue;
             }
-            columnName.append(",").append(m.getKey());
-            columnValue.append(",#{list[@_index-_].").append(m.getValue()).append("}");
+            columnName.append(columnName.length() == 0 ? "" : ",").append(m.getKey());
+            fieldNames.add(m.getValue());
+            rowLength += m.getValue().length() + 10;
         }
 
-        StringBuilder sql = new StringBuilder();
-        for (int i = 0; i < list.size(); i++) {
-            sql.append(",(").append(columnValue.substring(1).replace("@_index-_", i + "")).append(")");
+        int indexLength = String.valueOf(size).length();
+        int capacity = tableName.length() + columnName.length() + 24
+                + size * (rowLength + fieldNames.size() * indexLength + 1);
+        StringBuilder sql = new StringBuilder(capacity);
+        sql.append("INSERT INTO ").append(tableName).append(" (").append(columnName).append(") VALUES ");
+        for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "(" : ",(");
+            for (int j = 0; j < fieldNames.size(); j++) {
+                sql.append(j == 0 ? "#{list[" : ",#{list[").append(i).append("].").append(fieldNames.get(j)).append('}');
+            }
+            sql.append(')');
         }
-
-        sql = sql.replace(0, 1, " ");
-        sql.insert(0, "INSERT INTO %s (%s) VALUES");
-
-        String tableName = ReflectUtil.tableName(list.get(0).getClass());
-        return String.format(sql.toString(), tableName, columnName.substring(1));
+        return sql.toString();
     }
 
     /**
@@ -150,9 +259,18 @@ public class CRUDTemplate {
      * @return
      */
     public String delete(Object obj) {
-        Map<String, String> map = ReflectUtil.id(obj.getClass());
+        SqlKey key = new SqlKey(obj.getClass(), "delete", null);
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildDelete(obj.getClass()));
+        }
+        return sql;
+    }
+
+    private String buildDelete(Class<?> clazz) {
+        Map<String, String> map = ReflectUtil.id(clazz);
         SQL sql = new SQL();
-        sql.DELETE_FROM(ReflectUtil.tableName(obj.getClass()));
+        sql.DELETE_FROM(ReflectUtil.tableName(clazz));
         sql.WHERE(map.get(MyBatisUtil.KEY_ID_COLUMN) + " = #{" + map.get(MyBatisUtil.KEY_ID_FIELD) + "}");
         return sql.toString();
     }
@@ -164,23 +282,47 @@ public class CRUDTemplate {
      * @return
      */
     public String update(Map<?, ?> map) throws Exception {
-        SQL sql = new SQL();
         Object obj = map.get("bean");
         boolean ignoreNull = (Boolean) map.get("ignoreNull");
         boolean ignoreEmpty = (Boolean) map.get("ignoreEmpty");
 
-        sql.UPDATE(ReflectUtil.tableName(obj.getClass()));
-
-        Map<String, String> columnMap = MyBatisUtil.updateColumns(obj, ignoreNull, ignoreEmpty);
-
-        for (Map.Entry<String, String> m : columnMap.entrySet()) {
-            if (MyBatisUtil.KEY_ID_FIELD.equals(m.getKey()) || MyBatisUtil.KEY_ID_COLUMN.equals(m.getKey())) {
+        EntityMetadata metadata = EntityMetadata.of(obj.getClass());
+        List<EntityColumn> columns = metadata.getUpdatableColumns();
+        // 需要更新的字段，同一实体类相同的字段组合生成的SQL相同
+        BitSet columnSet = new BitSet(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = columns.get(i).getValue(obj);
+            // 是否忽略Null字段
+            if (ignoreNull && value == null) {
+                continue;
+            }
+            // 是否忽略""字段
+            if (ignoreEmpty && "".equals(value)) {
                 continue;
             }
-            sql.SET(m.getKey() + " = #{bean." + m.getValue() + "}");
+            columnSet.set(i);
         }
 
-        sql.WHERE(columnMap.get(MyBatisUtil.KEY_ID_COLUMN) + " = #{bean." + columnMap.get(MyBatisUtil.KEY_ID_FIELD) + "}");
+        SqlKey key = new SqlKey(obj.getClass(), "update", columnSet);
+        String sql = SQL_CACHE.get(key);
+        if (sql == null) {
+            sql = SQL_CACHE.put(key, buildUpdate(metadata, columnSet));
+        }
+        return sql;
+    }
+
+    private String buildUpdate(EntityMetadata metadata, BitSet columnSet) {
+        SQL sql = new SQL();
+        sql.UPDATE(metadata.getTableName());
+
+        List<EntityColumn> columns = metadata.getUpdatableColumns();
+        for (int i = columnSet.nextSetBit(0); i >= 0; i = columnSet.nextSetBit(i + 1)) {
+            EntityColumn column = columns.get(i);
+            sql.SET(column.getColumnName() + " = #{bean." + column.getFieldName() + "}");
+        }
+
+        Map<String, String> idMap = ReflectUtil.id(metadata.getType());
+        sql.WHERE(idMap.get(MyBatisUtil.KEY_ID_COLUMN) + " = #{bean." + idMap.get(MyBatisUtil.KEY_ID_FIELD) + "}");
         return sql.toString();
     }
 
@@ -192,8 +334,12 @@ public class CRUDTemplate {
      */
     public String refactorSql(Map<?, ?> map) {
         String sql = (String) map.get("sql");
-        return refactorSql(sql);
-
+        SqlKey key = new SqlKey(null, "refactorSql", sql);
+        String refactored = SQL_CACHE.get(key);
+        if (refactored == null) {
+            refactored = SQL_CACHE.put(key, refactorSql(sql));
+        }
+        return refactored;
     }
 
     private String refactorSql(String sql) {
@@ -217,4 +363,43 @@ public class CRUDTemplate {
 
     }
 
+    /**
+     * SQL缓存Key
+     */
+    private static final class SqlKey {
+
+        private final Class<?> type;
+        private final String operation;
+        private final Object shape;
+        private final int hash;
+
+        SqlKey(Class<?> type, String operation, Object shape) {
+            this.type = type;
+            this.operation = operation;
+            this.shape = shape;
+            int h = type == null ? 0 : type.hashCode();
+            h = 31 * h + operation.hashCode();
+            h = 31 * h + (shape == null ? 0 : shape.hashCode());
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SqlKey)) {
+                return false;
+            }
+            SqlKey key = (SqlKey) o;
+            return type == key.type && operation.equals(key.operation)
+                    && (shape == null ? key.shape == null : shape.equals(key.shape));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
 }
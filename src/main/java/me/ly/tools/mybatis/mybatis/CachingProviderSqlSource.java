@@ -0,0 +1,163 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.builder.annotation.ProviderSqlSource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+
+import me.ly.tools.mybatis.metrics.Metrics;
+import me.ly.tools.mybatis.utils.BoundedCache;
+import me.ly.tools.mybatis.utils.ReflectUtil;
+
+/**
+ * 带缓存的ProviderSqlSource。<br>
+ * MyBatis自带的ProviderSqlSource每次调用都会重新解析Provider返回SQL中的#{...}，生成新的StaticSqlSource。
+ * CRUDTemplate生成的SQL形态有限，这里按（SQL，参数类型）缓存解析结果，相同SQL不再重复解析。
+ * 指定了statementId时记录SQL生成耗时。
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public class CachingProviderSqlSource implements SqlSource {
+
+    private final SqlSourceBuilder sqlSourceParser;
+    private final Object provider;
+    private final Method providerMethod;
+    private final boolean providerTakesParameterObject;
+    /** 记录指标用的MappedStatement id，为null时不记录 */
+    private final String statementId;
+    /** 是否是CRUDTemplate.insertList，只缓存CRUDTemplate.isCachedInsertListSize的行数 */
+    private final boolean insertList;
+
+    private final BoundedCache<Key, SqlSource> sqlSourceCache = new BoundedCache<>(512);
+
+    /**
+     * 包装MyBatis的ProviderSqlSource，沿用其Provider方法
+     *
+     * @param configuration MyBatis配置
+     * @param source 原ProviderSqlSource
+     */
+    public CachingProviderSqlSource(Configuration configuration, ProviderSqlSource source) {
+        this(configuration, source, null);
+    }
+
+    /**
+     * 包装MyBatis的ProviderSqlSource，沿用其Provider方法
+     *
+     * @param configuration MyBatis配置
+     * @param source 原ProviderSqlSource
+     * @param statementId 所属MappedStatement的id，用于记录SQL生成耗时
+     */
+    public CachingProviderSqlSource(Configuration configuration, ProviderSqlSource source, String statementId) {
+        this.statementId = statementId;
+        this.sqlSourceParser = new SqlSourceBuilder(configuration);
+        this.providerMethod = (Method) ReflectUtil.getFieldValue(source, "providerMethod");
+        this.providerTakesParameterObject = (Boolean) ReflectUtil.getFieldValue(source, "providerTakesParameterObject");
+        Class<?> providerType = (Class<?>) ReflectUtil.getFieldValue(source, "providerType");
+        try {
+            // CRUDTemplate 无状态，共用一个实例
+            this.provider = providerType.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new BuilderException("无法创建SqlProvider：" + providerType, e);
+        }
+        this.insertList = providerType == CRUDTemplate.class && "insertList".equals(providerMethod.getName());
+    }
+
+    /**
+     * 是否是CRUDTemplate提供SQL的ProviderSqlSource
+     *
+     * @param sqlSource
+     * @return
+     */
+    public static boolean isCRUDTemplateSource(SqlSource sqlSource) {
+        return sqlSource instanceof ProviderSqlSource
+                && ReflectUtil.getFieldValue(sqlSource, "providerType") == CRUDTemplate.class;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        long start = System.nanoTime();
+        String sql = invokeProvider(parameterObject);
+        Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+
+        SqlSource sqlSource;
+        if (this.isCacheable(parameterObject)) {
+            Key key = new Key(sql, parameterType);
+            sqlSource = sqlSourceCache.get(key);
+            if (sqlSource == null) {
+                sqlSource = sqlSourceCache.put(key, sqlSourceParser.parse(sql, parameterType, new HashMap<String, Object>()));
+            }
+        } else {
+            sqlSource = sqlSourceParser.parse(sql, parameterType, new HashMap<String, Object>());
+        }
+        BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+        if (statementId != null) {
+            Metrics.get().recordSqlGeneration(statementId, MyBatisUtil.entityClassOf(parameterObject),
+                    System.nanoTime() - start);
+        }
+        return boundSql;
+    }
+
+    /**
+     * insertList的SQL随行数变化，只缓存CRUDTemplate也缓存的行数
+     */
+    private boolean isCacheable(Object parameterObject) {
+        if (!insertList || !(parameterObject instanceof Map)) {
+            return true;
+        }
+        Object list = ((Map<?, ?>) parameterObject).get("list");
+        return !(list instanceof List) || CRUDTemplate.isCachedInsertListSize(((List<?>) list).size());
+    }
+
+    private String invokeProvider(Object parameterObject) {
+        try {
+            if (providerTakesParameterObject) {
+                return (String) providerMethod.invoke(provider, parameterObject);
+            }
+            return (String) providerMethod.invoke(provider);
+        } catch (Exception e) {
+            throw new BuilderException("Error invoking SqlProvider method (" + provider.getClass().getName() + "."
+                    + providerMethod.getName() + ").  Cause: " + e, e);
+        }
+    }
+
+    public BoundedCache<?, SqlSource> getSqlSourceCache() {
+        return sqlSourceCache;
+    }
+
+    /**
+     * 缓存Key：SQL + 参数类型。参数类型决定#{...}解析出的javaType
+     */
+    private static final class Key {
+
+        private final String sql;
+        private final Class<?> parameterType;
+
+        Key(String sql, Class<?> parameterType) {
+            this.sql = sql;
+            this.parameterType = parameterType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return parameterType == key.parameterType && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + parameterType.hashCode();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import me.ly.tools.mybatis.mybatis.dialect.Dialect;
+import me.ly.tools.mybatis.mybatis.dialect.Dialects;
+
+/**
+ * 数据库元数据缓存，按DataSource缓存数据库类型、库名、自动识别的分页方言，按表缓存主键和字段。<br>
+ * 第一次使用时通过当前连接加载，也可以在启动时调用prewarm预先加载。表结构变化后调用refresh重新加载
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class DatabaseMetadataCache {
+
+    private static Logger logger = LoggerFactory.getLogger(DatabaseMetadataCache.class);
+
+    private final ConcurrentMap<Object, DatabaseInfo> databaseMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取数据库元数据，不存在时通过connection加载
+     *
+     * @param dataSource 连接所属的DataSource，为null时以JDBC URL区分数据库（每次都要读取连接元数据，不要在查询中使用）
+     * @param connection 数据库连接
+     * @return DatabaseInfo
+     * @throws SQLException
+     */
+    public DatabaseInfo get(DataSource dataSource, Connection connection) throws SQLException {
+        return this.get(dataSource == null ? connection.getMetaData().getURL() : (Object) dataSource, connection);
+    }
+
+    /**
+     * 获取数据库元数据，不存在时通过connection加载
+     *
+     * @param key 区分数据库的key，一般为DataSource；没有DataSource时可以使用MyBatis的Configuration
+     * @param connection 数据库连接
+     * @return DatabaseInfo
+     * @throws SQLException
+     */
+    public DatabaseInfo get(Object key, Connection connection) throws SQLException {
+        DatabaseInfo database = databaseMap.get(key);
+        if (database == null) {
+            database = new DatabaseInfo(connection);
+            DatabaseInfo exist = databaseMap.putIfAbsent(key, database);
+            if (exist != null) {
+                database = exist;
+            }
+        }
+        return database;
+    }
+
+    /**
+     * 预先加载数据库和表的元数据
+     *
+     * @param dataSource DataSource
+     * @param tables 表名
+     * @throws SQLException
+     */
+    public void prewarm(DataSource dataSource, String... tables) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseInfo database = this.get(dataSource, connection);
+            for (String table : tables) {
+                database.getTable(table, connection);
+            }
+        }
+    }
+
+    /**
+     * 清除DataSource的元数据，下次使用时重新加载
+     *
+     * @param dataSource DataSource
+     */
+    public void refresh(DataSource dataSource) {
+        databaseMap.remove(dataSource);
+    }
+
+    /**
+     * 清除表的元数据，下次使用时重新加载
+     *
+     * @param dataSource DataSource
+     * @param table 表名
+     */
+    public void refresh(DataSource dataSource, String table) {
+        DatabaseInfo database = databaseMap.get(dataSource);
+        if (database != null) {
+            database.tableMap.remove(table.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 清除全部元数据
+     */
+    public void refresh() {
+        databaseMap.clear();
+    }
+
+    /**
+     * 数据库元数据
+     */
+    public static final class DatabaseInfo {
+
+        private final String productName;
+        private final int majorVersion;
+        private final String catalog;
+        private final Dialect dialect;
+        private final ConcurrentMap<String, TableInfo> tableMap = new ConcurrentHashMap<>();
+
+        DatabaseInfo(Connection connection) throws SQLException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            this.productName = metaData.getDatabaseProductName();
+            this.majorVersion = metaData.getDatabaseMajorVersion();
+            this.catalog = connection.getCatalog();
+            this.dialect = Dialects.detect(productName, majorVersion);
+        }
+
+        /**
+         * 数据库产品名称，如MySQL、Oracle
+         */
+        public String getProductName() {
+            return productName;
+        }
+
+        public int getMajorVersion() {
+            return majorVersion;
+        }
+
+        /**
+         * 按数据库产品名称识别的分页方言
+         */
+        public Dialect getDialect() {
+            return dialect;
+        }
+
+        /**
+         * 库名，数据库不支持时为null
+         */
+        public String getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * 获取表的元数据，不存在时通过connection加载
+         *
+         * @param table 表名
+         * @param connection 数据库连接
+         * @return TableInfo
+         * @throws SQLException
+         */
+        public TableInfo getTable(String table, Connection connection) throws SQLException {
+            String key = table.toLowerCase(Locale.ROOT);
+            TableInfo tableInfo = tableMap.get(key);
+            if (tableInfo == null) {
+                tableInfo = new TableInfo(connection.getMetaData(), catalog, table);
+                TableInfo exist = tableMap.putIfAbsent(key, tableInfo);
+                if (exist != null) {
+                    tableInfo = exist;
+                }
+            }
+            return tableInfo;
+        }
+    }
+
+    /**
+     * 表元数据
+     */
+    public static final class TableInfo {
+
+        private final String tableName;
+        /** 按KEY_SEQ排序 */
+        private final List<String> primaryKeys;
+        private final List<String> columns;
+
+        TableInfo(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
+            this.tableName = table;
+            List<String> primaryKeys = new ArrayList<>(1);
+            try (ResultSet rs = metaData.getPrimaryKeys(catalog, null, table)) {
+                List<Short> sequences = new ArrayList<>(1);
+                while (rs.next()) {
+                    short seq = rs.getShort("KEY_SEQ");
+                    int index = 0;
+                    while (index < sequences.size() && sequences.get(index) < seq) {
+                        index++;
+                    }
+                    sequences.add(index, seq);
+                    primaryKeys.add(index, rs.getString("COLUMN_NAME"));
+                }
+            }
+            List<String> columns = new ArrayList<>();
+            try (ResultSet rs = metaData.getColumns(catalog, null, table, null)) {
+                while (rs.next()) {
+                    columns.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            if (columns.isEmpty()) {
+                logger.warn("未读取到表 " + table + " 的字段，请检查表名");
+            }
+            this.primaryKeys = Collections.unmodifiableList(primaryKeys);
+            this.columns = Collections.unmodifiableList(columns);
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public List<String> getPrimaryKeys() {
+            return primaryKeys;
+        }
+
+        /**
+         * 第一个主键，没有主键返回null
+         */
+        public String getFirstPrimaryKey() {
+            return primaryKeys.isEmpty() ? null : primaryKeys.get(0);
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+    }
+}
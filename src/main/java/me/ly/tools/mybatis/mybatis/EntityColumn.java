@@ -0,0 +1,120 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Transient;
+
+import me.ly.tools.mybatis.mybatis.annotation.JsonColumn;
+import me.ly.tools.mybatis.utils.FieldAccessor;
+
+/**
+ * 实体类字段与数据库字段的映射。创建时解析注解并缓存访问器，之后不再做注解扫描
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class EntityColumn {
+
+    private final String columnName;
+    private final String fieldName;
+    private final Field field;
+    /** 优先使用public的setter方法，没有则直接设置字段 */
+    private final FieldAccessor accessor;
+    private final boolean id;
+    private final boolean insertable;
+    private final boolean updatable;
+    /** 是否@JsonColumn */
+    private final boolean json;
+
+    EntityColumn(Field field) {
+        this.field = field;
+        this.fieldName = field.getName();
+        this.id = field.isAnnotationPresent(Id.class);
+
+        Column column = field.getAnnotation(Column.class);
+        this.columnName = column != null && !"".equals(column.name().trim()) ? column.name() : field.getName();
+
+        boolean mapped = column != null && !field.isAnnotationPresent(Transient.class);
+        this.insertable = mapped && column.insertable();
+        this.updatable = mapped && !this.id && column.updatable();
+        this.json = field.isAnnotationPresent(JsonColumn.class);
+
+        try {
+            this.accessor = FieldAccessor.of(field.getDeclaringClass(), field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法访问字段" + field, e);
+        }
+    }
+
+    /**
+     * 是否需要与数据库字段映射（@Id或@Column）
+     */
+    static boolean isMapped(Field field) {
+        return field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(Column.class);
+    }
+
+    /**
+     * 获取obj中该字段的值
+     *
+     * @param obj
+     * @return
+     */
+    public Object getValue(Object obj) {
+        try {
+            return accessor.get(obj);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("无法读取字段" + field, e);
+        }
+    }
+
+    /**
+     * 设置obj中该字段的值
+     *
+     * @param obj
+     * @param value
+     */
+    public void setValue(Object obj, Object value) {
+        try {
+            accessor.set(obj, value);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("无法设置字段" + field, e);
+        }
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getJavaType() {
+        return field.getType();
+    }
+
+    public Type getGenericType() {
+        return field.getGenericType();
+    }
+
+    public boolean isId() {
+        return id;
+    }
+
+    public boolean isInsertable() {
+        return insertable;
+    }
+
+    public boolean isUpdatable() {
+        return updatable;
+    }
+
+    public boolean isJson() {
+        return json;
+    }
+}
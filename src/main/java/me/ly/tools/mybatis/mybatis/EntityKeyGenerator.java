@@ -0,0 +1,151 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+
+import me.ly.tools.mybatis.utils.ReflectUtil;
+
+/**
+ * 将数据库生成的主键写回实体类@Id字段的KeyGenerator。<br>
+ * 不依赖MappedStatement的keyProperties，按每个实体类的元数据写入，所以同一个语句可以插入不同的实体类。
+ * 支持单条insert、insertList（多行VALUES，按行顺序对应）和BATCH执行器的批量insert。<br>
+ * 已设置主键的实体（SQL中包含主键字段）不处理
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public class EntityKeyGenerator extends Jdbc3KeyGenerator {
+
+    public static final EntityKeyGenerator INSTANCE = new EntityKeyGenerator();
+
+    /**
+     * 为BaseMapper的insert、insertList设置EntityKeyGenerator，已设置时不处理
+     *
+     * @param mappedStatement
+     */
+    public static void install(MappedStatement mappedStatement) {
+        if (mappedStatement.getKeyGenerator() == INSTANCE) {
+            return;
+        }
+        String id = mappedStatement.getId();
+        if (id == null || !(id.endsWith(".insert") || id.endsWith(".insertList"))) {
+            return;
+        }
+        SqlSource sqlSource = mappedStatement.getSqlSource();
+        if (sqlSource instanceof CachingProviderSqlSource || CachingProviderSqlSource.isCRUDTemplateSource(sqlSource)) {
+            ReflectUtil.setFieldValue(mappedStatement, "keyGenerator", INSTANCE);
+        }
+    }
+
+    @Override
+    public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        List<Object> parameters = new ArrayList<>(1);
+        parameters.add(parameter);
+        this.processBatch(ms, stmt, parameters);
+    }
+
+    @Override
+    public void processBatch(MappedStatement ms, Statement stmt, List<Object> parameters) {
+        List<Object> entities = new ArrayList<>(parameters.size());
+        for (Object parameter : parameters) {
+            collectEntities(parameter, entities);
+        }
+        if (entities.isEmpty()) {
+            return;
+        }
+        try (ResultSet rs = stmt.getGeneratedKeys()) {
+            EntityColumn keyColumn = null;
+            int keyIndex = 1;
+            for (int i = 0; i < entities.size() && rs.next(); i++) {
+                Object entity = entities.get(i);
+                EntityColumn idColumn = EntityMetadata.of(entity.getClass()).getIdColumn();
+                if (idColumn != keyColumn) {
+                    keyColumn = idColumn;
+                    keyIndex = keyIndex(rs.getMetaData(), idColumn.getColumnName());
+                }
+                idColumn.setValue(entity, convert(rs.getObject(keyIndex), idColumn.getJavaType()));
+            }
+        } catch (SQLException e) {
+            throw new ExecutorException("获取自增主键失败：" + e, e);
+        }
+    }
+
+    /**
+     * 主键在生成键结果集中的位置。PostgreSQL等驱动对RETURN_GENERATED_KEYS返回整行，按@Id的列名查找；
+     * Mysql只返回一列（GENERATED_KEY），找不到时取第一列
+     */
+    private static int keyIndex(ResultSetMetaData metaData, String columnName) throws SQLException {
+        int count = metaData.getColumnCount();
+        for (int i = 1; count > 1 && i <= count; i++) {
+            if (columnName.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 取出需要写入主键的实体。insertList的参数为{list: [...]}，字段组合以第一个对象为准
+     */
+    private static void collectEntities(Object parameter, List<Object> entities) {
+        if (parameter instanceof Map<?, ?>) {
+            Object list = ((Map<?, ?>) parameter).containsKey("list") ? ((Map<?, ?>) parameter).get("list") : null;
+            if (list instanceof Collection<?> && !((Collection<?>) list).isEmpty()) {
+                Collection<?> collection = (Collection<?>) list;
+                if (needKey(collection.iterator().next())) {
+                    entities.addAll(collection);
+                }
+            }
+        } else if (parameter != null && needKey(parameter)) {
+            entities.add(parameter);
+        }
+    }
+
+    private static boolean needKey(Object entity) {
+        EntityColumn idColumn = EntityMetadata.of(entity.getClass()).getIdColumn();
+        return idColumn != null && idColumn.getValue(entity) == null;
+    }
+
+    /**
+     * 驱动返回的主键类型不固定（Long、BigInteger、BigDecimal等），转换为@Id字段的类型
+     */
+    static Object convert(Object key, Class<?> type) {
+        if (key == null || type.isInstance(key)) {
+            return key;
+        }
+        if (key instanceof Number) {
+            Number number = (Number) key;
+            if (type == Long.class || type == long.class) {
+                return number.longValue();
+            }
+            if (type == Integer.class || type == int.class) {
+                return number.intValue();
+            }
+            if (type == Short.class || type == short.class) {
+                return number.shortValue();
+            }
+            if (type == BigInteger.class) {
+                return new BigInteger(number.toString());
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(number.toString());
+            }
+        }
+        if (type == String.class) {
+            return key.toString();
+        }
+        return key;
+    }
+}
@@ -0,0 +1,269 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.Table;
+
+import com.alibaba.fastjson.JSON;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 实体类元数据：表名、主键、可新增/可更新字段及字段访问器。<br>
+ * 每个Class只解析一次，解析结果不可变，多线程共享。
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class EntityMetadata {
+
+    private static Logger logger = LoggerFactory.getLogger(EntityMetadata.class);
+
+    private static final ConcurrentMap<Class<?>, EntityMetadata> METADATA_CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    /** 无参构造方法 ()Object，没有无参构造方法时为null */
+    private final MethodHandle constructor;
+    private final String tableName;
+    private final EntityColumn idColumn;
+    /** 所有映射字段（@Id或@Column），用于结果集映射 */
+    private final List<EntityColumn> columns;
+    /** 可新增字段，不含主键 */
+    private final List<EntityColumn> insertableColumns;
+    /** 可更新字段，不含主键 */
+    private final List<EntityColumn> updatableColumns;
+    private final Map<String, EntityColumn> columnMap;
+    private final Map<String, EntityColumn> fieldMap;
+
+    /** ReflectUtil.id 返回的Map，主键未定义时为null */
+    private final Map<String, String> idMap;
+    /** MyBatisUtil.insertColumns 返回的Map，分主键有值和无值两种 */
+    private final Map<String, String> insertColumnMap;
+    private final Map<String, String> insertColumnWithIdMap;
+
+    /**
+     * 获取clazz的元数据，首次调用时解析并缓存
+     *
+     * @param clazz 实体类
+     * @return EntityMetadata
+     */
+    public static EntityMetadata of(Class<?> clazz) {
+        EntityMetadata metadata = METADATA_CACHE.get(clazz);
+        if (metadata != null) {
+            return metadata;
+        }
+        metadata = new EntityMetadata(clazz);
+        EntityMetadata exist = METADATA_CACHE.putIfAbsent(clazz, metadata);
+        return exist == null ? metadata : exist;
+    }
+
+    private EntityMetadata(Class<?> clazz) {
+        this.type = clazz;
+        this.constructor = resolveConstructor(clazz);
+        this.tableName = resolveTableName(clazz);
+
+        List<Field> fieldList;
+        try {
+            fieldList = MyBatisUtil.getFieldContainsParent(clazz);
+        } catch (Exception e) {
+            throw new IllegalStateException("解析实体类失败：" + clazz, e);
+        }
+
+        EntityColumn id = null;
+        List<EntityColumn> all = new ArrayList<>();
+        List<EntityColumn> insertable = new ArrayList<>();
+        List<EntityColumn> updatable = new ArrayList<>();
+        Map<String, EntityColumn> byColumn = new LinkedHashMap<>();
+        Map<String, EntityColumn> byField = new LinkedHashMap<>();
+
+        for (Field field : fieldList) {
+            if (!EntityColumn.isMapped(field)) {
+                continue;
+            }
+            EntityColumn column = new EntityColumn(field);
+            if (column.isId() && id == null) {
+                id = column;
+            }
+            all.add(column);
+            byColumn.put(column.getColumnName(), column);
+            byField.put(column.getFieldName(), column);
+            if (column.isInsertable() && !column.isId()) {
+                insertable.add(column);
+            }
+            if (column.isUpdatable()) {
+                updatable.add(column);
+            }
+        }
+
+        this.idColumn = id;
+        this.columns = Collections.unmodifiableList(all);
+        this.insertableColumns = Collections.unmodifiableList(insertable);
+        this.updatableColumns = Collections.unmodifiableList(updatable);
+        this.columnMap = Collections.unmodifiableMap(byColumn);
+        this.fieldMap = Collections.unmodifiableMap(byField);
+
+        if (id == null) {
+            this.idMap = null;
+        } else {
+            Map<String, String> map = new HashMap<>(4);
+            map.put(MyBatisUtil.KEY_ID_FIELD, id.getFieldName());
+            map.put(MyBatisUtil.KEY_ID_COLUMN, id.getColumnName());
+            this.idMap = Collections.unmodifiableMap(map);
+        }
+
+        Map<String, String> insertMap = new LinkedHashMap<>();
+        for (EntityColumn column : insertable) {
+            insertMap.put(column.getColumnName(), column.getFieldName());
+        }
+        this.insertColumnMap = Collections.unmodifiableMap(insertMap);
+
+        Map<String, String> insertWithIdMap = new LinkedHashMap<>();
+        if (id != null) {
+            insertWithIdMap.put(MyBatisUtil.KEY_ID_FIELD, id.getFieldName());
+            if (id.isInsertable()) {
+                insertWithIdMap.put(id.getColumnName(), id.getFieldName());
+            }
+        }
+        insertWithIdMap.putAll(insertMap);
+        this.insertColumnWithIdMap = Collections.unmodifiableMap(insertWithIdMap);
+    }
+
+    private static MethodHandle resolveConstructor(Class<?> clazz) {
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static String resolveTableName(Class<?> clazz) {
+        Table table = clazz.getAnnotation(Table.class);
+        if (null != table && !"".equals(table.name().trim())) {
+            return table.name();
+        }
+        logger.warn("{}未配置@Table,将使用类名作为对应的表名", clazz);
+        return clazz.getSimpleName();
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * 通过无参构造方法创建实例
+     *
+     * @return 实体对象
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException(type + "没有无参构造方法");
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("实例化失败：" + type, e);
+        }
+    }
+
+    /**
+     * 复制实体。可变的字段值也复制：Date克隆，数组复制，@JsonColumn字段按泛型类型经JSON序列化再解析；其它值共用
+     *
+     * @param entity 实体对象
+     * @return 副本
+     */
+    public Object copy(Object entity) {
+        Object copy = this.newInstance();
+        for (EntityColumn column : columns) {
+            column.setValue(copy, copyValue(column, column.getValue(entity)));
+        }
+        return copy;
+    }
+
+    private static Object copyValue(EntityColumn column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (column.isJson()) {
+            return JSON.parseObject(JSON.toJSONString(value), column.getGenericType());
+        }
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object array = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, array, 0, length);
+            return array;
+        }
+        return value;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * 主键字段，未定义@Id时为null
+     */
+    public EntityColumn getIdColumn() {
+        return idColumn;
+    }
+
+    public boolean hasId() {
+        return idColumn != null;
+    }
+
+    public List<EntityColumn> getColumns() {
+        return columns;
+    }
+
+    public List<EntityColumn> getInsertableColumns() {
+        return insertableColumns;
+    }
+
+    public List<EntityColumn> getUpdatableColumns() {
+        return updatableColumns;
+    }
+
+    /**
+     * 根据数据库字段名获取映射字段
+     *
+     * @param columnName 数据库字段名
+     * @return 不存在返回null
+     */
+    public EntityColumn getColumn(String columnName) {
+        return columnMap.get(columnName);
+    }
+
+    /**
+     * 根据属性名获取映射字段
+     *
+     * @param fieldName 属性名
+     * @return 不存在返回null
+     */
+    public EntityColumn getField(String fieldName) {
+        return fieldMap.get(fieldName);
+    }
+
+    /**
+     * 主键映射，格式同ReflectUtil.id。未定义@Id时为null
+     */
+    public Map<String, String> getIdMap() {
+        return idMap;
+    }
+
+    Map<String, String> getInsertColumnMap(boolean withId) {
+        return withId ? insertColumnWithIdMap : insertColumnMap;
+    }
+}
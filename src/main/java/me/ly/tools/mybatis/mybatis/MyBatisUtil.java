@@ -1,12 +1,12 @@
 package me.ly.tools.mybatis.mybatis;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.util.*;
 
-import javax.persistence.Column;
-import javax.persistence.Id;
+import javax.persistence.Entity;
 import javax.persistence.MappedSuperclass;
-import javax.persistence.Transient;
+import javax.persistence.Table;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -26,51 +26,26 @@ public class MyBatisUtil {
 	 * The constant KEY_ID_FIELD.
 	 */
 	public static final String KEY_ID_FIELD = "@_idField-_";
-
 	/**
-	 * 用于新增时属性与字段映射缓存 <br>
-	 * Map&lt;Class, Map&lt;ColumnName, FiledName>><br>
+	 * 流式查询fetchSize的参数名，MybatisPaginationInterceptor按此识别流式查询，普通查询的参数不会用到这个名称
 	 */
-	private static Map<Class<?>, Map<String, String>> insertColumnMap = new HashMap<>();
+	public static final String KEY_STREAM_FETCH_SIZE = "@_streamFetchSize-_";
 
 	/**
 	 * 用于新增时属性与字段映射 <br>
-	 * Map中定义了特殊Key:@_idField-_，代表obj中的ID字段名称<br>
+	 * Map中定义了特殊Key:@_idField-_，代表obj中的ID字段名称，仅在obj的ID有值时存在<br>
 	 *
 	 * @param obj
 	 *            the obj
-	 * @return Map &lt;ColumnName, FiledName>
+	 * @return Map &lt;ColumnName, FiledName> 不可修改
 	 * @throws Exception
 	 *             the exception
 	 */
 	public static <T> Map<String, String> insertColumns(T obj) throws Exception {
-		Map<String, String> columnMap = insertColumnMap.get(obj.getClass());
-		if (columnMap == null) {
-			columnMap = new HashMap<>();
-		} else {
-			if (!columnMap.isEmpty()) {
-				return columnMap;
-			}
-		}
-		List<Field> fieldList = getFieldContainsParent(obj.getClass());
-		for (Field field : fieldList) {
-			field.setAccessible(true);
-			if (field.isAnnotationPresent(Transient.class) || !field.isAnnotationPresent(Column.class)) {
-				continue;
-			}
-			if (field.isAnnotationPresent(Id.class)) {
-				if (field.get(obj) == null) {
-					continue;
-				}
-				columnMap.put(KEY_ID_FIELD, field.getName());
-			}
-			Column column = field.getAnnotation(Column.class);
-			if (column.insertable()) {
-				columnMap.put(getColumnName(field), field.getName());
-			}
-		}
-		insertColumnMap.put(obj.getClass(), columnMap);
-		return columnMap;
+		EntityMetadata metadata = EntityMetadata.of(obj.getClass());
+		EntityColumn idColumn = metadata.getIdColumn();
+		boolean withId = idColumn != null && idColumn.getValue(obj) != null;
+		return metadata.getInsertColumnMap(withId);
 	}
 
 	/**
@@ -108,22 +83,18 @@ public class MyBatisUtil {
 	 *             the exception
 	 */
 	public static <T> Map<String, String> updateColumns(T obj, boolean ignoreNull, boolean ignoreEmpty) throws Exception {
-		Map<String, String> columnMap = new HashMap<>();
-		List<Field> fieldList = getFieldContainsParent(obj.getClass());
-		for (Field field : fieldList) {
-			field.setAccessible(true);
-
-			if (field.isAnnotationPresent(Id.class)) {
-				columnMap.put(KEY_ID_COLUMN, getColumnName(field));
-				columnMap.put(KEY_ID_FIELD, field.getName());
-				continue;
-			}
+		EntityMetadata metadata = EntityMetadata.of(obj.getClass());
+		List<EntityColumn> columns = metadata.getUpdatableColumns();
+		Map<String, String> columnMap = new LinkedHashMap<>((int) ((columns.size() + 2) / 0.75) + 1);
 
-			if (!field.isAnnotationPresent(Column.class) || field.isAnnotationPresent(Transient.class)) {
-				continue;
-			}
+		EntityColumn idColumn = metadata.getIdColumn();
+		if (idColumn != null) {
+			columnMap.put(KEY_ID_COLUMN, idColumn.getColumnName());
+			columnMap.put(KEY_ID_FIELD, idColumn.getFieldName());
+		}
 
-			Object value = field.get(obj);
+		for (EntityColumn column : columns) {
+			Object value = column.getValue(obj);
 
 			// 是否忽略Null字段
 			if (ignoreNull && value == null) {
@@ -133,21 +104,54 @@ public class MyBatisUtil {
 			if (ignoreEmpty && "".equals(value)) {
 				continue;
 			}
-			Column column = field.getAnnotation(Column.class);
-			if (column.updatable()) {
-				columnMap.put(getColumnName(field), field.getName());
-			}
+			columnMap.put(column.getColumnName(), column.getFieldName());
 		}
 
 		return columnMap;
 	}
 
-	private static String getColumnName(Field field) {
-		Column column = field.getAnnotation(Column.class);
-		if (column != null && !"".equals(column.name().trim())) {
-			return column.name();
+	/**
+	 * 主键的比较key。数据库返回的主键类型可能与调用方传入的不同（如Long和Integer），统一转为字符串比较
+	 *
+	 * @param id
+	 *            主键
+	 * @return key
+	 */
+	public static String idKey(Object id) {
+		if (id instanceof BigDecimal) {
+			return ((BigDecimal) id).stripTrailingZeros().toPlainString();
+		}
+		return String.valueOf(id);
+	}
+
+	/**
+	 * 从MyBatis的参数中找出实体类，用于按实体统计指标。依次取returnTypeClass、bean、list的第一个元素、参数本身
+	 *
+	 * @param parameterObject
+	 *            MyBatis的参数
+	 * @return 实体类（标注了@Table或@Entity），找不到返回null
+	 */
+	public static Class<?> entityClassOf(Object parameterObject) {
+		Object candidate = parameterObject;
+		if (parameterObject instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) parameterObject;
+			if (map.containsKey("returnTypeClass") && map.get("returnTypeClass") instanceof Class) {
+				return (Class<?>) map.get("returnTypeClass");
+			}
+			if (map.containsKey("bean")) {
+				candidate = map.get("bean");
+			} else if (map.containsKey("list") && map.get("list") instanceof List) {
+				List<?> list = (List<?>) map.get("list");
+				candidate = list.isEmpty() ? null : list.get(0);
+			} else {
+				return null;
+			}
 		}
-		return field.getName();
+		if (candidate == null) {
+			return null;
+		}
+		Class<?> clazz = candidate.getClass();
+		return clazz.isAnnotationPresent(Table.class) || clazz.isAnnotationPresent(Entity.class) ? clazz : null;
 	}
 
 	/**
@@ -218,4 +222,61 @@ public class MyBatisUtil {
 		int fromIndex = tmpSql.indexOf("FROM ");
 		return sql.substring(6, fromIndex).trim();
 	}
+
+	/**
+	 * 查找SQL最外层的关键字，忽略括号（子查询）和引号中的内容，不区分大小写<br>
+	 * 关键字中的空格可以匹配任意空白，如"ORDER BY"
+	 *
+	 * @param sql
+	 * @param keyword
+	 * @return 关键字的下标，不存在返回-1
+	 */
+	public static int indexOfTopLevelKeyword(String sql, String keyword) {
+		String[] words = keyword.split(" ");
+		int depth = 0;
+		char quote = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0 && (i == 0 || !isIdentifierChar(sql.charAt(i - 1))) && matchWords(sql, i, words)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matchWords(String sql, int index, String[] words) {
+		int i = index;
+		for (int w = 0; w < words.length; w++) {
+			if (w > 0) {
+				int start = i;
+				while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (i == start) {
+					return false;
+				}
+			}
+			if (!sql.regionMatches(true, i, words[w], 0, words[w].length())) {
+				return false;
+			}
+			i += words[w].length();
+		}
+		return i >= sql.length() || !isIdentifierChar(sql.charAt(i));
+	}
+
+	private static boolean isIdentifierChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
 }
@@ -4,85 +4,351 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.BaseStatementHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import me.ly.tools.mybatis.entity.Pagination;
+import me.ly.tools.mybatis.metrics.Metrics;
+import me.ly.tools.mybatis.metrics.SqlMetrics;
+import me.ly.tools.mybatis.mybatis.DatabaseMetadataCache.DatabaseInfo;
+import me.ly.tools.mybatis.mybatis.dialect.Dialect;
+import me.ly.tools.mybatis.mybatis.dialect.Dialects;
+import me.ly.tools.mybatis.mybatis.dialect.MySqlDialect;
+import me.ly.tools.mybatis.utils.FieldAccessor;
 import me.ly.tools.mybatis.utils.ReflectUtil;
 
 /**
- * Mybatis分页拦截组件
+ * Mybatis分页拦截组件<br>
+ * 分页SQL由Dialect生成，可通过dialect属性指定（别名或类名），未指定时按数据库自动识别<br>
+ * 游标分页（Pagination.isSeekMode()）时不使用偏移量，而是在WHERE中加上排序字段大于（降序为小于）上一页最后一行的条件，
+ * 查询结束后根据最后一行生成下一页令牌
  *
  * @author Created by LiYao on 2017-03-04 21:16.
  */
-@Intercepts({ @Signature(method = "prepare", type = StatementHandler.class, args = { Connection.class }) })
+@Intercepts({ @Signature(method = "prepare", type = StatementHandler.class, args = { Connection.class }),
+		@Signature(method = "query", type = Executor.class, args = { MappedStatement.class, Object.class, RowBounds.class,
+				ResultHandler.class }) })
 @SuppressWarnings({ "unused", "SqlDialectInspection", "SqlNoDataSourceInspection" })
 public class MybatisPaginationInterceptor implements Interceptor {
 
 	private static Logger logger = LoggerFactory.getLogger(MybatisPaginationInterceptor.class);
 
+	/** 游标分页条件的参数名前缀 */
+	private static final String SEEK_PARAMETER_PREFIX = "__seek_";
+
+	/** 数据库类型、主键等元数据，稳定运行后分页不再查询元数据 */
+	private final DatabaseMetadataCache metadataCache = new DatabaseMetadataCache();
+
+	/** 流式查询未指定fetchSize时使用，Mysql使用Integer.MIN_VALUE逐行读取 */
+	private static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
+	/** 配置的分页方言，为null时按数据库自动识别 */
+	private volatile Dialect dialect;
+
+	/** Map&lt;MappedStatement id, 语句分类> */
+	private final ConcurrentMap<String, StatementKind> statementKinds = new ConcurrentHashMap<>();
+
+	/** SQL重复执行诊断，为null时不开启 */
+	private volatile QueryDiagnostics diagnostics;
+
+	private static final FieldAccessor DELEGATE = requiredAccessor(RoutingStatementHandler.class, "delegate");
+
+	private static final FieldAccessor MAPPED_STATEMENT = requiredAccessor(BaseStatementHandler.class, "mappedStatement");
+
+	private static final FieldAccessor BOUND_SQL_SQL = requiredAccessor(BoundSql.class, "sql");
+
+	private static final FieldAccessor BOUND_SQL_PARAMETER_MAPPINGS = requiredAccessor(BoundSql.class, "parameterMappings");
+
 	@Override
 	public Object intercept(Invocation invocation) throws Throwable {
-		RoutingStatementHandler handler = (RoutingStatementHandler) invocation.getTarget();
-		StatementHandler delegate = (StatementHandler) ReflectUtil.getFieldValue(handler, "delegate");
+		if (invocation.getTarget() instanceof Executor) {
+			return this.query(invocation);
+		}
+		StatementHandler delegate = (StatementHandler) DELEGATE.get(invocation.getTarget());
 		if (null == delegate) {
 			return invocation.proceed();
 		}
+		QueryDiagnostics diagnostics = this.diagnostics;
+		if (diagnostics != null) {
+			diagnostics.record(delegate.getBoundSql().getSql());
+		}
+		MappedStatement mappedStatement = (MappedStatement) MAPPED_STATEMENT.get(delegate);
+		if (mappedStatement == null || this.classify(mappedStatement) != StatementKind.SELECT) {
+			return invocation.proceed();
+		}
 		BoundSql boundSql = delegate.getBoundSql();
 		// 拿到传入的参数分页实体类
 		Object obj = boundSql.getParameterObject();
-		Object pagParme = obj;
-		// 获取当前要执行的Sql语句，也就是我们直接在Mapper映射语句中写的Sql语句
-		String sql = MyBatisUtil.ridSqlBlank(boundSql.getSql());
-
-		// 用于处理insert时，将返回的key值与@Id标注的字段对应
-		if (sql.toUpperCase().startsWith("INSERT")) {
-			keyProperties(delegate, pagParme);
+		// 流式查询，设置fetchSize
+		if (obj instanceof Map<?, ?> && ((Map<?, ?>) obj).containsKey(MyBatisUtil.KEY_STREAM_FETCH_SIZE)) {
+			Statement statement = (Statement) invocation.proceed();
+			Connection connection = (Connection) invocation.getArgs()[0];
+			Integer fetchSize = (Integer) ((Map<?, ?>) obj).get(MyBatisUtil.KEY_STREAM_FETCH_SIZE);
+			if (fetchSize == null) {
+				DatabaseInfo database = metadataCache.get(this.databaseKey(mappedStatement), connection);
+				Dialect dialect = this.dialect != null ? this.dialect : database.getDialect();
+				fetchSize = dialect instanceof MySqlDialect ? Integer.MIN_VALUE : DEFAULT_STREAM_FETCH_SIZE;
+			}
+			statement.setFetchSize(fetchSize);
+			return statement;
+		}
+		Pagination pagination = this.findPagination(obj);
+		if (pagination == null) {
 			return invocation.proceed();
 		}
+		// 获取当前要执行的Sql语句，也就是我们直接在Mapper映射语句中写的Sql语句
+		String sql = MyBatisUtil.ridSqlBlank(boundSql.getSql());
 		// 只处理SELECT语句
-		if (!sql.toUpperCase().startsWith("SELECT")) {
+		if (!sql.regionMatches(true, 0, "SELECT", 0, 6)) {
 			return invocation.proceed();
 		}
-		boolean isPaging = false;
+		// 拦截到的prepare方法参数是一个Connection对象
+		Connection connection = (Connection) invocation.getArgs()[0];
+		DatabaseInfo database = metadataCache.get(this.databaseKey(mappedStatement), connection);
+		Dialect dialect = this.dialect != null ? this.dialect : database.getDialect();
+
+		long countStart = System.nanoTime();
+		boolean countQuery = true;
+		boolean counted = true;
+		switch (pagination.getCountStrategy()) {
+		case NONE:
+		case HAS_NEXT:
+			countQuery = false;
+			break;
+		case ESTIMATE:
+			if (!this.setEstimatedTotalRecord(sql, connection, dialect, pagination, obj)) {
+				counted = this.setTotalRecord(sql, connection, dialect, pagination, obj);
+			}
+			break;
+		default:
+			counted = this.setTotalRecord(sql, connection, dialect, pagination, obj);
+		}
+		if (countQuery) {
+			SqlMetrics metrics = Metrics.get();
+			Class<?> entity = MyBatisUtil.entityClassOf(obj);
+			metrics.recordCountQuery(mappedStatement.getId(), entity, System.nanoTime() - countStart);
+			if (!counted) {
+				metrics.recordError(mappedStatement.getId(), entity);
+			}
+		}
+
+		// 获取分页Sql语句
+		String pageSql;
+		if (pagination.isSeekMode()) {
+			pageSql = this.getSeekSql(pagination, sql, dialect, boundSql, mappedStatement.getConfiguration());
+		} else {
+			pageSql = dialect.getPageSql(sql, pagination.getOffset(), pagination.getRowLimit(),
+					table -> database.getTable(table, connection).getFirstPrimaryKey());
+		}
+
+		// 利用反射设置当前BoundSql对应的sql属性为我们建立好的分页Sql语句
+		BOUND_SQL_SQL.set(boundSql, pageSql);
+
+		return invocation.proceed();
+	}
 
+	/**
+	 * 语句分类，每个MappedStatement只计算一次。INSERT在分类时安装主键回写
+	 *
+	 * @param mappedStatement
+	 * @return StatementKind
+	 */
+	private StatementKind classify(MappedStatement mappedStatement) {
+		StatementKind kind = statementKinds.get(mappedStatement.getId());
+		if (kind != null) {
+			return kind;
+		}
+		SqlCommandType commandType = mappedStatement.getSqlCommandType();
+		if (commandType == SqlCommandType.SELECT) {
+			kind = StatementKind.SELECT;
+		} else {
+			// 用于处理insert时，将返回的key值与@Id标注的字段对应
+			if (commandType == SqlCommandType.INSERT) {
+				EntityKeyGenerator.install(mappedStatement);
+			}
+			kind = StatementKind.OTHER;
+		}
+		statementKinds.put(mappedStatement.getId(), kind);
+		return kind;
+	}
+
+	private static FieldAccessor requiredAccessor(Class<?> clazz, String name) {
+		FieldAccessor accessor = ReflectUtil.accessor(clazz, name);
+		if (accessor == null) {
+			throw new IllegalStateException("不支持的Mybatis版本，" + clazz.getName() + "中没有字段" + name);
+		}
+		return accessor;
+	}
+
+	/**
+	 * 语句分类
+	 */
+	private enum StatementKind {
+		/** 查询，可能需要分页或流式读取 */
+		SELECT,
+		/** 其它语句，不处理 */
+		OTHER
+	}
+
+	/**
+	 * 分页查询结束后设置是否存在下一页：HAS_NEXT时去掉多查的一行；游标分页根据最后一行生成下一页令牌
+	 */
+	private Object query(Invocation invocation) throws Throwable {
+		Object result = invocation.proceed();
+		Pagination pagination = this.findPagination(invocation.getArgs()[1]);
+		if (pagination == null || !(result instanceof List<?>)) {
+			return result;
+		}
+		List<?> list = (List<?>) result;
+		int pageSize = pagination.getPageSize();
+		boolean hasNext;
+		if (pagination.getCountStrategy() == Pagination.CountStrategy.HAS_NEXT) {
+			hasNext = list.size() > pageSize;
+			if (hasNext) {
+				// 返回副本，原list同时在BaseExecutor的一级缓存中，不能修改
+				list = new ArrayList<>(list.subList(0, pageSize));
+				result = list;
+			}
+		} else if (pagination.getCountStrategy() == Pagination.CountStrategy.EXACT && !pagination.isSeekMode()) {
+			hasNext = pagination.getPageIndex() < pagination.getPageCount();
+		} else {
+			// 不足一页说明没有下一页
+			hasNext = !list.isEmpty() && list.size() >= pageSize;
+		}
+		pagination.setHasNext(hasNext);
+		if (!pagination.isSeekMode()) {
+			return result;
+		}
+		if (!hasNext) {
+			pagination.setNextSeekValues((Object[]) null);
+			return result;
+		}
+		Object last = list.get(list.size() - 1);
+		List<Pagination.SeekColumn> seekColumns = pagination.getSeekColumns();
+		Object[] values = new Object[seekColumns.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.getSeekValue(last, unqualified(seekColumns.get(i).getColumn()));
+		}
+		pagination.setNextSeekValues(values);
+		return result;
+	}
+
+	/**
+	 * 从参数中找到分页对象
+	 *
+	 * @param obj
+	 *            参数对象
+	 * @return 不存在返回null
+	 */
+	private Pagination findPagination(Object obj) {
+		if (obj instanceof Pagination) {
+			return (Pagination) obj;
+		}
 		if (obj instanceof Map<?, ?>) {
-			Map<?, ?> paramMap = (Map<?, ?>) obj;
-			for (Map.Entry<?, ?> entry : paramMap.entrySet()) {
-				Object val = entry.getValue();
+			for (Object val : ((Map<?, ?>) obj).values()) {
 				if (val instanceof Pagination) {
-					pagParme = val;
-					isPaging = true;
-					break;
+					return (Pagination) val;
 				}
 			}
 		}
+		return null;
+	}
 
-		if (obj instanceof Pagination || isPaging) {
-			Pagination pagination = (Pagination) pagParme;
-			// 拦截到的prepare方法参数是一个Connection对象
-			Connection connection = (Connection) invocation.getArgs()[0];
+	private Object getSeekValue(Object row, String column) {
+		Object value;
+		if (row instanceof Map<?, ?>) {
+			Map<?, ?> map = (Map<?, ?>) row;
+			value = map.get(column);
+			if (value == null) {
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					if (column.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+						value = entry.getValue();
+						break;
+					}
+				}
+			}
+		} else {
+			EntityColumn entityColumn = EntityMetadata.of(row.getClass()).getColumn(column);
+			if (entityColumn == null) {
+				throw new IllegalStateException(row.getClass().getName() + " 中没有映射排序字段 " + column);
+			}
+			value = entityColumn.getValue(row);
+		}
+		if (value == null) {
+			throw new IllegalStateException("游标分页排序字段 " + column + " 的值为null，无法生成下一页令牌");
+		}
+		return value;
+	}
 
-			this.setTotalRecord(sql, connection, pagination, obj);
+	/**
+	 * 元数据缓存的key：Environment中的DataSource，没有时使用Configuration（一个Configuration对应一个数据库），
+	 * 不在每次查询时读取连接的URL
+	 */
+	private Object databaseKey(MappedStatement mappedStatement) {
+		Configuration configuration = mappedStatement.getConfiguration();
+		Environment environment = configuration.getEnvironment();
+		if (environment == null || environment.getDataSource() == null) {
+			return configuration;
+		}
+		return environment.getDataSource();
+	}
 
-			// 获取分页Sql语句
-			String pageSql = this.getPageSql(pagination, sql, connection);
+	/**
+	 * 指定分页方言
+	 *
+	 * @param dialect
+	 *            为null时按数据库自动识别
+	 */
+	public void setDialect(Dialect dialect) {
+		this.dialect = dialect;
+	}
 
-			// 利用反射设置当前BoundSql对应的sql属性为我们建立好的分页Sql语句
-			ReflectUtil.setFieldValue(boundSql, "sql", pageSql);
+	public Dialect getDialect() {
+		return dialect;
+	}
 
-		}
+	/**
+	 * 数据库元数据缓存，可用于启动时预热（prewarm）或表结构变化后刷新（refresh）
+	 *
+	 * @return DatabaseMetadataCache
+	 */
+	public DatabaseMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
 
-		return invocation.proceed();
+	/**
+	 * 开启SQL重复执行诊断，为null时关闭
+	 *
+	 * @param diagnostics QueryDiagnostics
+	 */
+	public void setDiagnostics(QueryDiagnostics diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	public QueryDiagnostics getDiagnostics() {
+		return diagnostics;
 	}
 
 	@Override
@@ -90,26 +356,28 @@ public class MybatisPaginationInterceptor implements Interceptor {
 		return Plugin.wrap(target, this);
 	}
 
+	/**
+	 * 支持的属性：<br>
+	 * dialect，分页方言的别名（mysql、postgresql、h2、sqlserver、oracle、oracle12c、ansi）或类名<br>
+	 * diagnostics，开启SQL重复执行诊断，值为作用域类型（thread、transaction、request）<br>
+	 * diagnosticsThreshold，同一形状执行超过该次数时报告，默认10
+	 */
 	@Override
 	public void setProperties(Properties properties) {
-		System.out.println(properties.getProperty("databaseType"));
-	}
-
-	private void keyProperties(StatementHandler delegate, Object paramObj) {
-		MappedStatement mappedStatement = (MappedStatement) ReflectUtil.getFieldValue(delegate, "mappedStatement");
-		if (mappedStatement == null) {
-			return;
-		}
-		// 方法全限定名
-		String mappedId = mappedStatement.getId();
-		// 考虑到其它类中也可能定义insert方法，且不一定会使用@Id或自己配置了keyProperties。
-		// 所以只拦截封装的基本insert方法，该方法在BaseMapper中，由GeneralMapper继承
-		if (StringUtils.isEmpty(mappedId) || !mappedId.endsWith("GeneralMapper.insert")) {
-			return;
-		}
-		Map<String, String> idMap = ReflectUtil.id(paramObj.getClass());
-		String[] strs = { idMap.get(MyBatisUtil.KEY_ID_FIELD) };
-		ReflectUtil.setFieldValue(mappedStatement, "keyProperties", strs);
+		// databaseType为旧的属性名
+		String dialectName = properties.getProperty("dialect", properties.getProperty("databaseType"));
+		if (StringUtils.isNotBlank(dialectName)) {
+			this.setDialect(Dialects.of(dialectName));
+		}
+		String scopeType = properties.getProperty("diagnostics");
+		if (StringUtils.isNotBlank(scopeType)) {
+			QueryDiagnostics diagnostics = new QueryDiagnostics(QueryDiagnostics.ScopeType.of(scopeType));
+			String threshold = properties.getProperty("diagnosticsThreshold");
+			if (StringUtils.isNotBlank(threshold)) {
+				diagnostics.setThreshold(Integer.parseInt(threshold.trim()));
+			}
+			this.setDiagnostics(diagnostics);
+		}
 	}
 
 	/**
@@ -119,35 +387,23 @@ public class MybatisPaginationInterceptor implements Interceptor {
 	 *            原始SQL
 	 * @param connection
 	 *            数据库连接
+	 * @param dialect
+	 *            分页方言
 	 * @param page
 	 *            分页对象
 	 * @param paramObj
 	 *            参数对象
-	 * 
+	 * @return 统计失败返回false
 	 */
-	private void setTotalRecord(String originalSql, Connection connection, Pagination page, Object paramObj) {
+	private boolean setTotalRecord(String originalSql, Connection connection, Dialect dialect, Pagination page,
+			Object paramObj) {
 
 		PreparedStatement preparedStatement = null;
 		ResultSet rs = null;
 		try {
-			// String countSql = "SELECT COUNT(*) AS TOTAL FROM (" + originalSql
-			// + ") AS A";
-
-			int fromIndex = originalSql.toUpperCase().indexOf("FROM");
-
-			String countSql = "SELECT COUNT(*) AS TOTAL " + originalSql.substring(fromIndex);
+			String countSql = dialect.getCountSql(originalSql);
 			preparedStatement = connection.prepareStatement(countSql);
-
-			if (countSql.contains("?") && paramObj instanceof Map<?, ?>) {
-				Map<?, ?> paramMap = (Map<?, ?>) paramObj;
-				Object[] params = (Object[]) paramMap.get("params");
-				if (params != null) {
-					for (int i = 0; i < params.length; i++) {
-						preparedStatement.setObject(i + 1, params[i]);
-					}
-				}
-
-			}
+			this.setCountParameters(preparedStatement, countSql, paramObj);
 
 			rs = preparedStatement.executeQuery();
 			if (rs.next()) {
@@ -156,6 +412,7 @@ public class MybatisPaginationInterceptor implements Interceptor {
 			}
 		} catch (SQLException e) {
 			logger.error("", e);
+			return false;
 		} finally {
 			try {
 				if (rs != null) {
@@ -168,159 +425,176 @@ public class MybatisPaginationInterceptor implements Interceptor {
 				logger.error("", e);
 			}
 		}
+		return true;
 	}
 
 	/**
-	 * 根据page对象获取对应的分页查询Sql语句，这里只做了两种数据库类型，Mysql和Oracle 其它的数据库都 没有进行分页
+	 * 使用执行计划中的估算行数设置总记录数，由方言决定是否支持
 	 *
-	 * @param page
-	 *            分页对象
-	 * @param sql
-	 *            原sql语句
+	 * @param originalSql
+	 *            原始SQL
 	 * @param connection
 	 *            数据库连接
-	 * @return sql
-	 */
-	private String getPageSql(Pagination page, String sql, Connection connection) throws Exception {
-		String dbType = connection.getMetaData().getDatabaseProductName().toUpperCase();
-		StringBuffer sqlBuffer = new StringBuffer(sql);
-		if ("MYSQL".equals(dbType)) {
-			return getMysqlPageSql(page, sql, connection);
-		} else if ("ORACLE".equals(dbType)) {
-			return getOraclePageSql(page, sqlBuffer);
-		}
-		return sqlBuffer.toString();
-	}
-
-	/**
-	 * 获取Mysql数据库的分页查询语句
-	 *
+	 * @param dialect
+	 *            分页方言
 	 * @param page
 	 *            分页对象
-	 * @param sql
-	 *            原sql语句
-	 * @return Mysql数据库分页语句
+	 * @param paramObj
+	 *            参数对象
+	 * @return 数据库不支持或估算失败返回false
 	 */
-	private String getMysqlPageSql(Pagination page, String sql, Connection connection) throws Exception {
-		if (MyBatisUtil.isJoinQuery(sql)) {
-			return this.mysqlLimitPageSql(page, sql);
-		} else {
-			return this.mysqlSubqueryPageSql(page, sql, connection);
+	private boolean setEstimatedTotalRecord(String originalSql, Connection connection, Dialect dialect, Pagination page,
+			Object paramObj) {
+		String estimateSql = dialect.getEstimateSql(originalSql);
+		if (estimateSql == null) {
+			return false;
+		}
+		try (PreparedStatement preparedStatement = connection.prepareStatement(estimateSql)) {
+			this.setCountParameters(preparedStatement, estimateSql, paramObj);
+			try (ResultSet rs = preparedStatement.executeQuery()) {
+				long estimate = dialect.getEstimate(rs);
+				if (estimate < 0) {
+					return false;
+				}
+				page.setEstimatedTotalCount((int) Math.min(Integer.MAX_VALUE, estimate));
+				return true;
+			}
+		} catch (SQLException e) {
+			logger.warn("估算总条数失败，使用COUNT统计：" + e.getMessage());
+			return false;
 		}
 	}
 
-	/**
-	 * Mysql数据库的Limit分页查询语句
-	 *
-	 * @param page
-	 *            分页对象
-	 * @param sql
-	 *            原sql语句
-	 * @return Mysql数据库Limit分页查询语句
-	 */
-	private String mysqlLimitPageSql(Pagination page, String sql) {
-		StringBuilder sqlBuilder = new StringBuilder(sql);
-		int offset = (page.getPageIndex() - 1) * page.getPageSize();
-		sqlBuilder.append(" LIMIT ").append(offset).append(",").append(page.getPageSize());
-		return sqlBuilder.toString();
+	private void setCountParameters(PreparedStatement preparedStatement, String sql, Object paramObj) throws SQLException {
+		if (sql.contains("?") && paramObj instanceof Map<?, ?>) {
+			Map<?, ?> paramMap = (Map<?, ?>) paramObj;
+			Object[] params = (Object[]) paramMap.get("params");
+			if (params != null) {
+				for (int i = 0; i < params.length; i++) {
+					preparedStatement.setObject(i + 1, params[i]);
+				}
+			}
+		}
 	}
 
 	/**
-	 * Mysql数据库的子查询分页语句
-	 * 
+	 * 游标分页查询语句。<br>
+	 * 去掉原SQL最外层的ORDER BY和LIMIT，按排序字段加上“在上一页最后一行之后”的条件并排序，只取一页。<br>
+	 * 多个排序字段时展开为 (c1 > ?) OR (c1 = ? AND c2 > ?) ...，以支持升降序混合，并在前面加上 c1 >= ? 以便使用索引范围扫描。
+	 * 含GROUP BY、HAVING、UNION的语句先包装成子查询再加条件
+	 *
 	 * @param page
 	 *            分页对象
 	 * @param sql
-	 *            sql语句
-	 * @param connection
-	 *            数据库连接
+	 *            原sql语句
+	 * @param dialect
+	 *            分页方言
+	 * @param boundSql
+	 *            用于追加条件参数
+	 * @param configuration
+	 *            MyBatis配置
 	 * @return sql
-	 * 
-	 * @throws Exception
 	 */
-	@SuppressWarnings({ "StringBufferReplaceableByString", "JavaDoc" })
-	private String mysqlSubqueryPageSql(Pagination page, String sql, Connection connection) throws Exception {
-
-		String tableSet = MyBatisUtil.getTableSetFromSql(sql).trim();
-		// 获取别名
-		int blankIndex = tableSet.lastIndexOf(" ");
-		String alias = "";
-		String tableName = tableSet;
-		if (blankIndex > -1) {
-			alias = tableSet.substring(blankIndex);
-			tableName = tableSet.substring(0, blankIndex);
-		}
-		String idName = this.getFirstPkName(tableName, connection);
-		String selectSet = MyBatisUtil.getSelectSetFromSql(sql);
-		String from = "";
-		int fromIndex = sql.toUpperCase().indexOf("FROM ");
-		if (fromIndex > -1) {
-			from = sql.substring(fromIndex).replace(alias, "");
-		}
-		// 是否存在别名，不存在则添加别名
-		if (StringUtils.isBlank(alias)) {
-			alias = "t1";
-			String[] strs = selectSet.split(",");
-			for (int i = 0; i < strs.length; i++) {
-				strs[i] = alias + "." + strs[i];
+	private String getSeekSql(Pagination page, String sql, Dialect dialect, BoundSql boundSql,
+			Configuration configuration) {
+		List<Pagination.SeekColumn> seekColumns = page.getSeekColumns();
+		Object[] seekValues = page.getSeekValues();
+		if (seekValues != null && seekValues.length != seekColumns.size()) {
+			throw new IllegalArgumentException("游标分页排序字段值的个数与排序字段不一致");
+		}
+
+		String body = sql;
+		int tailIndex = MyBatisUtil.indexOfTopLevelKeyword(body, "ORDER BY");
+		if (tailIndex < 0) {
+			tailIndex = MyBatisUtil.indexOfTopLevelKeyword(body, "LIMIT");
+		}
+		if (tailIndex > -1) {
+			if (body.indexOf('?', tailIndex) > -1) {
+				throw new IllegalArgumentException("游标分页不支持带参数的ORDER BY或LIMIT：" + sql);
 			}
-			selectSet = StringUtils.join(strs, ",");
+			body = body.substring(0, tailIndex).trim();
 		}
 
-		int offset = (page.getPageIndex() - 1) * page.getPageSize();
+		boolean wrap = MyBatisUtil.indexOfTopLevelKeyword(body, "GROUP BY") > -1
+				|| MyBatisUtil.indexOfTopLevelKeyword(body, "HAVING") > -1
+				|| MyBatisUtil.indexOfTopLevelKeyword(body, "UNION") > -1;
+		String[] columns = new String[seekColumns.size()];
+		for (int i = 0; i < columns.length; i++) {
+			String column = seekColumns.get(i).getColumn();
+			columns[i] = wrap ? unqualified(column) : column;
+		}
 
-		/*
-		 * SELECT company_name FROM test1 t1 JOIN (SELECT id as id FROM test1
-		 * ORDER BY company_name limit 736817,20) as t2 ON t2.id = t1.id;
-		 */
-		StringBuilder sqlBuilder = new StringBuilder("SELECT ");
-		sqlBuilder.append(selectSet).append(" FROM ").append(tableName).append(" ").append(alias);
-		sqlBuilder.append(" JOIN ").append(" (SELECT ").append(idName).append(" AS id ");
-		sqlBuilder.append(from).append(" LIMIT ").append(offset).append(",");
-		sqlBuilder.append(page.getPageSize()).append(") t2 ON t2.id = t1.").append(idName);
+		StringBuilder sqlBuilder = new StringBuilder(body.length() + 64 + columns.length * 48);
+		if (wrap) {
+			sqlBuilder.append("SELECT * FROM (").append(body).append(") seek_t");
+		} else {
+			sqlBuilder.append(body);
+		}
+		if (seekValues != null) {
+			List<Object> parameters = new ArrayList<>(columns.length * (columns.length + 3) / 2);
+			String predicate = this.seekPredicate(seekColumns, columns, seekValues, parameters);
+			int whereIndex = wrap ? -1 : MyBatisUtil.indexOfTopLevelKeyword(body, "WHERE");
+			if (whereIndex > -1) {
+				sqlBuilder.setLength(whereIndex);
+				sqlBuilder.append("WHERE (").append(body.substring(whereIndex + 5).trim()).append(") AND (").append(predicate)
+						.append(")");
+			} else {
+				sqlBuilder.append(" WHERE ").append(predicate);
+			}
+			this.appendSeekParameters(boundSql, configuration, parameters);
+		}
+
+		sqlBuilder.append(" ORDER BY ");
+		for (int i = 0; i < columns.length; i++) {
+			sqlBuilder.append(i == 0 ? "" : ", ").append(columns[i]).append(seekColumns.get(i).isDesc() ? " DESC" : " ASC");
+		}
 
-		return sqlBuilder.toString();
+		return dialect.getLimitSql(sqlBuilder.toString(), page.getRowLimit());
 	}
 
 	/**
-	 * 获取Oracle数据库的分页查询语句
-	 *
-	 * @param page
-	 *            分页对象
-	 * @param sqlBuffer
-	 *            包含原sql语句的StringBuffer对象
-	 * @return Oracle数据库的分页查询语句
+	 * 生成“在上一页最后一行之后”的条件，参数按占位符顺序放入parameters
 	 */
-	private String getOraclePageSql(Pagination page, StringBuffer sqlBuffer) {
-		int offset = (page.getPageIndex() - 1) * page.getPageSize() + 1;
-		sqlBuffer.insert(0, "SELECT U.*, ROWNUM r FROM (").append(") U WHERE ROWNUM < ").append(offset + page.getPageSize());
-		sqlBuffer.insert(0, "SELECT * FROM (").append(") WHERE r >= ").append(offset);
-		return sqlBuffer.toString();
+	private String seekPredicate(List<Pagination.SeekColumn> seekColumns, String[] columns, Object[] values,
+			List<Object> parameters) {
+		StringBuilder predicate = new StringBuilder(columns.length * 48);
+		if (columns.length > 1) {
+			predicate.append(columns[0]).append(seekColumns.get(0).isDesc() ? " <= ?" : " >= ?").append(" AND (");
+			parameters.add(values[0]);
+		}
+		for (int i = 0; i < columns.length; i++) {
+			predicate.append(i == 0 ? "(" : " OR (");
+			for (int j = 0; j < i; j++) {
+				predicate.append(columns[j]).append(" = ? AND ");
+				parameters.add(values[j]);
+			}
+			predicate.append(columns[i]).append(seekColumns.get(i).isDesc() ? " < ?" : " > ?").append(")");
+			parameters.add(values[i]);
+		}
+		if (columns.length > 1) {
+			predicate.append(")");
+		}
+		return predicate.toString();
 	}
 
-	private String getDbName(Connection connection) throws Exception {
-		String url = connection.getMetaData().getURL();
-		int end = url.indexOf("?");
-		if (!url.contains("?")) {
-			end = url.length();
+	/**
+	 * 追加游标条件的参数。使用新的ParameterMapping列表，不修改SqlSource中共享的列表
+	 */
+	private void appendSeekParameters(BoundSql boundSql, Configuration configuration, List<Object> parameters) {
+		List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings().size() + parameters.size());
+		parameterMappings.addAll(boundSql.getParameterMappings());
+		for (int i = 0; i < parameters.size(); i++) {
+			String property = SEEK_PARAMETER_PREFIX + i;
+			parameterMappings.add(new ParameterMapping.Builder(configuration, property, Object.class).build());
+			boundSql.setAdditionalParameter(property, parameters.get(i));
 		}
-		return StringUtils.substring(url, url.lastIndexOf("/") + 1, end);
+		BOUND_SQL_PARAMETER_MAPPINGS.set(boundSql, parameterMappings);
 	}
 
-	private String getFirstPkName(String table, Connection connection) throws Exception {
-		ResultSet rs = connection.getMetaData().getPrimaryKeys(null, this.getDbName(connection), table);
-		try {
-			while (rs.next()) {
-				// 第一个主键
-				if (rs.getShort("KEY_SEQ") == 1) {
-					return rs.getString("COLUMN_NAME");
-				}
-			}
-			return null;
-		} finally {
-			if (rs != null) {
-				rs.close();
-			}
-		}
+	/**
+	 * 去掉字段的表别名
+	 */
+	private static String unqualified(String column) {
+		return column.substring(column.lastIndexOf('.') + 1);
 	}
 }
@@ -1,30 +1,33 @@
 package me.ly.tools.mybatis.mybatis;
 
+import me.ly.tools.mybatis.metrics.Metrics;
 import me.ly.tools.mybatis.mybatis.annotation.ResultIntercept;
+import me.ly.tools.mybatis.mybatis.codec.TypeCodecRegistry;
 import me.ly.tools.mybatis.utils.ReflectUtil;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.ResultHandler;
 
-import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.Id;
 import javax.persistence.Table;
-import java.lang.reflect.Field;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
-import java.math.BigDecimal;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Mybatis 查询结果集处理拦截器
+ * Mybatis 查询结果集处理拦截器<br>
+ * 每次映射记录行数和耗时到Metrics
  *
  * @author Created by LiYao on 2017-03-03 22:38.
  */
@@ -34,6 +37,14 @@ public class MybatisResultInterceptor implements Interceptor {
 
     private boolean interceptAllMethod = true;
 
+    private TypeCodecRegistry typeCodecRegistry = new TypeCodecRegistry();
+
+    /** Map&lt;(实体类, 结果集字段布局), RowHydrator> */
+    private final ConcurrentMap<RowHydrator.Key, RowHydrator> hydratorCache = new ConcurrentHashMap<>();
+
+    /** Map&lt;MappedStatement id, 是否拦截及返回值类型> */
+    private final ConcurrentMap<String, Decision> decisionCache = new ConcurrentHashMap<>();
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         ResultSetHandler resultSetHandler = (ResultSetHandler) invocation.getTarget();
@@ -43,60 +54,144 @@ public class MybatisResultInterceptor implements Interceptor {
         }
         // 方法全限定名
         final String mappedId = mappedStatement.getId();
-        if (null == mappedId || !isIntercept(mappedId)) {
+        if (StringUtils.isBlank(mappedId)) {
             return invocation.proceed();
         }
+        long start = System.nanoTime();
+        Decision decision = decisionCache.get(mappedId);
+        if (decision == null) {
+            decision = resolveDecision(mappedStatement);
+            Decision exist = decisionCache.putIfAbsent(mappedId, decision);
+            if (exist != null) {
+                decision = exist;
+            }
+        }
+        if (!decision.intercept) {
+            return recordMapping(mappedId, null, start, invocation.proceed());
+        }
 
-        final Class<?> returnTypeClass = confirmReturnType(resultSetHandler, mappedStatement);
+        final Class<?> returnTypeClass = confirmReturnType(resultSetHandler, decision);
         if (returnTypeClass == null) {
-            return invocation.proceed();
+            return recordMapping(mappedId, null, start, invocation.proceed());
         }
 
         Statement statement = (Statement) invocation.getArgs()[0]; // 取得方法的参数Statement
         ResultSet rs = statement.getResultSet(); // 取得结果集
 
-        List<ResultColumn> resultColumnList = confirmResultColumn(returnTypeClass, rs);
-        if (resultColumnList.isEmpty()) {
-            return invocation.proceed();
+        RowHydrator hydrator = confirmHydrator(returnTypeClass, rs);
+        if (hydrator.isEmpty()) {
+            return recordMapping(mappedId, returnTypeClass, start, invocation.proceed());
+        }
+
+        // 带ResultHandler的查询逐行交给handler，不保存结果
+        ResultHandler resultHandler = (ResultHandler) ReflectUtil.getFieldValue(resultSetHandler, "resultHandler");
+        if (resultHandler != null) {
+            DefaultResultContext context = new DefaultResultContext();
+            while (!context.isStopped() && rs.next()) {
+                context.nextResultObject(hydrator.hydrate(rs));
+                resultHandler.handleResult(context);
+            }
+            Metrics.get().recordMapping(mappedId, returnTypeClass, context.getResultCount(), System.nanoTime() - start);
+            return new ArrayList<>(0);
         }
 
         List<Object> list = new ArrayList<>();
 
         while (rs.next()) {
-            Object obj = returnTypeClass.newInstance();
-            for (ResultColumn resultColumn : resultColumnList) {
-                Object o = getResultValue(resultColumn.getFieldType(), resultColumn.getColumnName(), rs);
-                ReflectUtil.setFieldValue(obj, resultColumn.getFieldName(), o);
-            }
-            list.add(obj);
+            list.add(hydrator.hydrate(rs));
         }
-        return list;
+        return recordMapping(mappedId, returnTypeClass, start, list);
+    }
+
+    /**
+     * 记录映射的行数和耗时
+     *
+     * @param mappedId
+     * @param entity
+     * @param start
+     * @param result
+     * @return result
+     */
+    private static Object recordMapping(String mappedId, Class<?> entity, long start, Object result) {
+        int rows = result instanceof List ? ((List<?>) result).size() : 0;
+        Metrics.get().recordMapping(mappedId, entity, rows, System.nanoTime() - start);
+        return result;
     }
 
     /**
-     * 确认返回值类型
+     * 确认返回值类型。方法参数中有returnTypeClass时以参数为准，否则使用resultMap的类型
      *
      * @param resultSetHandler
-     * @param mappedStatement
+     * @param decision
      * @return
      */
-    private Class<?> confirmReturnType(ResultSetHandler resultSetHandler, MappedStatement mappedStatement) {
-        DefaultParameterHandler defaultParameterHandler = (DefaultParameterHandler) ReflectUtil.getFieldValue(resultSetHandler,
-                "parameterHandler");
-        if (null == defaultParameterHandler) {
-            return null;
+    private Class<?> confirmReturnType(ResultSetHandler resultSetHandler, Decision decision) {
+        if (decision.returnTypeParameter) {
+            DefaultParameterHandler defaultParameterHandler = (DefaultParameterHandler) ReflectUtil.getFieldValue(resultSetHandler,
+                    "parameterHandler");
+            if (null == defaultParameterHandler) {
+                return null;
+            }
+            Object parameterObject = defaultParameterHandler.getParameterObject();
+            if (parameterObject instanceof Map && ((Map<?, ?>) parameterObject).containsKey("returnTypeClass")) {
+                Class<?> pojoClazz = (Class<?>) ((Map<?, ?>) parameterObject).get("returnTypeClass");
+                if (pojoClazz != null) {
+                    return pojoClazz;
+                }
+            }
         }
-        Class<?> pojoClazz = null;
+        return decision.returnType;
+    }
 
-        //第一步判断参数中有无返回类型
-        Map<?, ?> map = (Map<?, ?>) defaultParameterHandler.getParameterObject();
-        if (map != null && map.containsKey("returnTypeClass")) {
-            pojoClazz = (Class<?>) map.get("returnTypeClass");
+    /**
+     * 解析MappedStatement是否拦截、返回值类型。结果不随调用变化，按id缓存
+     *
+     * @param mappedStatement
+     * @return
+     * @throws Exception
+     */
+    private Decision resolveDecision(MappedStatement mappedStatement) throws Exception {
+        String fullMethodName = mappedStatement.getId();
+        int lastPointIndex = fullMethodName.lastIndexOf(".");
+        String fullClazz = fullMethodName.substring(0, lastPointIndex);
+        String methodName = fullMethodName.substring(lastPointIndex + 1, fullMethodName.length());
+        Class<?> clazz = Class.forName(fullClazz);
+        if (!isIntercept(clazz, ReflectUtil.getMethod(clazz, methodName))) {
+            return Decision.SKIP;
         }
-        if (pojoClazz != null) {
-            return pojoClazz;
+        return new Decision(true, hasReturnTypeParameter(clazz, methodName), staticReturnType(mappedStatement));
+    }
+
+    /**
+     * 同名方法中是否有@Param("returnTypeClass")参数
+     *
+     * @param clazz
+     * @param methodName
+     * @return
+     */
+    private static boolean hasReturnTypeParameter(Class<?> clazz, String methodName) {
+        for (Method method : clazz.getMethods()) {
+            if (!method.getName().equals(methodName)) {
+                continue;
+            }
+            for (Annotation[] annotations : method.getParameterAnnotations()) {
+                for (Annotation annotation : annotations) {
+                    if (annotation instanceof Param && "returnTypeClass".equals(((Param) annotation).value())) {
+                        return true;
+                    }
+                }
+            }
         }
+        return false;
+    }
 
+    /**
+     * resultMap中的实体类型，XML中配置了resultMap或者类型不是实体时返回null，让Mybatis自己处理
+     *
+     * @param mappedStatement
+     * @return
+     */
+    private static Class<?> staticReturnType(MappedStatement mappedStatement) {
         List<ResultMap> resultMaps = mappedStatement.getResultMaps();
         if (CollectionUtils.isEmpty(resultMaps) || resultMaps.size() > 1) {
             return null;
@@ -106,7 +201,7 @@ public class MybatisResultInterceptor implements Interceptor {
         if (CollectionUtils.isNotEmpty(resultMap.getResultMappings())) {
             return null;
         }
-        pojoClazz = resultMap.getType();
+        Class<?> pojoClazz = resultMap.getType();
         // 如果没有配置该注解，则让Mybatis自己处理
         if (!pojoClazz.isAnnotationPresent(Table.class) && !pojoClazz.isAnnotationPresent(Entity.class)) {
             return null;
@@ -115,126 +210,26 @@ public class MybatisResultInterceptor implements Interceptor {
     }
 
     /**
-     * 确定返回结果字段
+     * 确定返回结果字段。同一实体类、同一结果集字段布局只编译一次
      *
      * @param returnTypeClass
      * @param resultSet
      * @return
      * @throws Exception
      */
-    private List<ResultColumn> confirmResultColumn(final Class<?> returnTypeClass, final ResultSet resultSet) throws Exception {
-        List<Field> fieldList = MyBatisUtil.getFieldContainsParent(returnTypeClass);
-
-        ResultSetMetaData metaData = resultSet.getMetaData();
-        final int columnCount = metaData.getColumnCount();
-
-        Map<String, String> columnMap = new HashMap<>((int) (columnCount / 0.75));
-
-        for (int i = 1; i <= columnCount; i++) {
-            String name = metaData.getColumnLabel(i);
-            columnMap.put(name, name);
-        }
-
-        List<ResultColumn> resultColumnList = new ArrayList<>();
-
-        for (Field f : fieldList) {
-            f.setAccessible(true);
-            if (!f.isAnnotationPresent(Id.class) && !f.isAnnotationPresent(Column.class)) {
-                continue;
-            }
-            String columnName = f.getName();
-            if (null != f.getAnnotation(Column.class)) {
-                Column col = f.getAnnotation(Column.class);
-                String cn = col.name();
-                if (cn.trim().length() > 0) {
-                    columnName = cn;
-                }
-            }
-            if (columnMap.containsKey(columnName)) {
-                resultColumnList.add(new ResultColumn(columnName, f.getName(), f.getGenericType()));
-            }
-        }
-        return resultColumnList;
-    }
-    // private Class<?>[] objectTypes = { Byte.class, Short.class,
-    // Integer.class, Long.class, Double.class, Float.class, Boolean.class,
-    // Date.class, BigDecimal.class, String.class };
-
-    private Class<?>[] basicTypes = { byte.class, short.class, int.class, long.class, double.class, float.class, boolean.class };
-
-    /**
-     * 获取返回结果值
-     *
-     * @param resultType
-     * @param fieldName
-     * @param rs
-     * @return
-     * @throws Exception
-     */
-    private Object getResultValue(Type resultType, String fieldName, ResultSet rs) throws Exception {
-        int index = rs.findColumn(fieldName);
-        Object obj = rs.getObject(index);
-        // 如果返回值要求不是基本数据类型 并且 在数据库对应值为null。直接返回null
-        if (!arrayContains(basicTypes, resultType) && obj == null) {
-            return null;
-        }
-
-        if (resultType.equals(String.class)) {
-            return rs.getString(index);
-        } else if (resultType.equals(byte.class) || resultType.equals(Byte.class)) {
-            // 返回值要求是基本数据类型 并且 在数据库对应值为null。则返回默认值
-            if (obj == null) {
-                return 0;
-            }
-            return rs.getByte(index);
-        } else if (resultType.equals(short.class) || resultType.equals(Short.class)) {
-            if (obj == null) {
-                return 0;
-            }
-            return rs.getShort(index);
-        } else if (resultType.equals(int.class) || resultType.equals(Integer.class)) {
-            if (obj == null) {
-                return 0;
-            }
-            return rs.getInt(index);
-        } else if (resultType.equals(long.class) || resultType.equals(Long.class)) {
-            if (obj == null) {
-                return 0L;
+    private RowHydrator confirmHydrator(final Class<?> returnTypeClass, final ResultSet resultSet) throws Exception {
+        String[] labels = RowHydrator.columnLabels(resultSet.getMetaData());
+        RowHydrator.Key key = new RowHydrator.Key(returnTypeClass, labels);
+        RowHydrator hydrator = hydratorCache.get(key);
+        if (hydrator == null) {
+            hydrator = RowHydrator.compile(EntityMetadata.of(returnTypeClass), labels, typeCodecRegistry);
+            RowHydrator exist = hydratorCache.putIfAbsent(key, hydrator);
+            if (exist != null) {
+                hydrator = exist;
             }
-            return rs.getLong(index);
-        } else if (resultType.equals(double.class) || resultType.equals(Double.class)) {
-            if (obj == null) {
-                return 0.0D;
-            }
-            return rs.getDouble(index);
-        } else if (resultType.equals(float.class) || resultType.equals(Float.class)) {
-            if (obj == null) {
-                return 0.0F;
-            }
-            return rs.getFloat(index);
-        } else if (resultType.equals(boolean.class) || resultType.equals(Boolean.class)) {
-            return obj != null && rs.getBoolean(index);
-        } else if (resultType.equals(Date.class)) {
-            return rs.getTimestamp(index);
-        } else if (resultType.equals(BigDecimal.class)) {
-            return rs.getBigDecimal(index);
-        } else {
-            return obj;
         }
+        return hydrator;
     }
-
-    private boolean arrayContains(Object[] arrays, Object obj) {
-        if (arrays == null || arrays.length <= 0) {
-            return false;
-        }
-        for (Object o : arrays) {
-            if (o.equals(obj)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @Override
     public Object plugin(Object target) {
         return Plugin.wrap(target, this);
@@ -245,19 +240,8 @@ public class MybatisResultInterceptor implements Interceptor {
         System.out.println(properties.getProperty("databaseType"));
     }
 
-    private boolean isIntercept(String fullMethodName) throws Exception {
-        // 方法名为空，不拦截
-        if (StringUtils.isBlank(fullMethodName)) {
-            return false;
-        }
-
-        int lastPointIndex = fullMethodName.lastIndexOf(".");
-        String fullClazz = fullMethodName.substring(0, lastPointIndex);
-        String methodName = fullMethodName.substring(lastPointIndex + 1, fullMethodName.length());
-        Class<?> clazz = Class.forName(fullClazz);
-
-        Method method = ReflectUtil.getMethod(clazz, methodName);
-        ResultIntercept methodAnnotation = method.getAnnotation(ResultIntercept.class);
+    private boolean isIntercept(Class<?> clazz, Method method) {
+        ResultIntercept methodAnnotation = method == null ? null : method.getAnnotation(ResultIntercept.class);
         if (methodAnnotation != null) {
             return methodAnnotation.intercept();
         }
@@ -273,33 +257,37 @@ public class MybatisResultInterceptor implements Interceptor {
     @SuppressWarnings("unused")
     public void setInterceptAllMethod(boolean interceptAllMethod) {
         this.interceptAllMethod = interceptAllMethod;
+        this.decisionCache.clear();
     }
 
     /**
-     * 结果集字段
+     * 设置结果集字段转换器，设置后会清空已编译的读取计划
+     *
+     * @param typeCodecRegistry
      */
-    private static class ResultColumn {
-
-        private String columnName;
-        private String fieldName;
-        private Type fieldType;
+    @SuppressWarnings("unused")
+    public void setTypeCodecRegistry(TypeCodecRegistry typeCodecRegistry) {
+        this.typeCodecRegistry = typeCodecRegistry;
+        this.hydratorCache.clear();
+    }
 
-        ResultColumn(String columnName, String fieldName, Type fieldType) {
-            this.columnName = columnName;
-            this.fieldName = fieldName;
-            this.fieldType = fieldType;
-        }
+    /**
+     * MappedStatement的拦截结果
+     */
+    private static final class Decision {
 
-        String getColumnName() {
-            return columnName;
-        }
+        static final Decision SKIP = new Decision(false, false, null);
 
-        String getFieldName() {
-            return fieldName;
-        }
+        final boolean intercept;
+        /** 方法参数中有returnTypeClass，每次从参数中取返回值类型 */
+        final boolean returnTypeParameter;
+        /** resultMap中的实体类型 */
+        final Class<?> returnType;
 
-        Type getFieldType() {
-            return fieldType;
+        Decision(boolean intercept, boolean returnTypeParameter, Class<?> returnType) {
+            this.intercept = intercept;
+            this.returnTypeParameter = returnTypeParameter;
+            this.returnType = returnType;
         }
     }
 
@@ -0,0 +1,77 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.builder.annotation.ProviderSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import me.ly.tools.mybatis.metrics.Metrics;
+import me.ly.tools.mybatis.metrics.SqlMetrics;
+import me.ly.tools.mybatis.utils.ReflectUtil;
+
+/**
+ * 基础CRUD语句增强拦截组件。<br>
+ * 第一次执行由CRUDTemplate提供SQL的语句时，将其SqlSource替换为CachingProviderSqlSource，
+ * insert、insertList设置EntityKeyGenerator以写回自增主键。每个语句只处理一次。<br>
+ * 每次执行记录耗时和失败次数到Metrics
+ */
+@Intercepts({
+        @Signature(method = "query", type = Executor.class, args = { MappedStatement.class, Object.class, RowBounds.class,
+                ResultHandler.class }),
+        @Signature(method = "update", type = Executor.class, args = { MappedStatement.class, Object.class }) })
+@SuppressWarnings({ "unused" })
+public class MybatisStatementInterceptor implements Interceptor {
+
+    /** 已处理过的MappedStatement id */
+    private final Set<String> preparedIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        if (!preparedIds.contains(mappedStatement.getId())) {
+            prepare(mappedStatement);
+        }
+        SqlMetrics metrics = Metrics.get();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+        } finally {
+            Class<?> entity = MyBatisUtil.entityClassOf(invocation.getArgs()[1]);
+            metrics.recordExecution(mappedStatement.getId(), entity, System.nanoTime() - start);
+            if (!success) {
+                metrics.recordError(mappedStatement.getId(), entity);
+            }
+        }
+    }
+
+    private void prepare(MappedStatement mappedStatement) {
+        SqlSource sqlSource = mappedStatement.getSqlSource();
+        if (!(sqlSource instanceof CachingProviderSqlSource) && CachingProviderSqlSource.isCRUDTemplateSource(sqlSource)) {
+            ReflectUtil.setFieldValue(mappedStatement, "sqlSource",
+                    new CachingProviderSqlSource(mappedStatement.getConfiguration(), (ProviderSqlSource) sqlSource,
+                            mappedStatement.getId()));
+        }
+        EntityKeyGenerator.install(mappedStatement);
+        preparedIds.add(mappedStatement.getId());
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
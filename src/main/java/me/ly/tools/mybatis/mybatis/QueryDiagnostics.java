@@ -0,0 +1,441 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import me.ly.tools.mybatis.utils.BoundedCache;
+import me.ly.tools.mybatis.utils.SpringTransactions;
+
+/**
+ * SQL重复执行诊断，用于发现N+1查询。<br>
+ * 按SQL的形状（常量替换为?、IN列表合并等）计数，同一作用域内同一形状执行超过阈值时生成报告，
+ * 报告包含第一次超过阈值时的调用栈（已去掉MyBatis、本工具和代理相关的栈帧）。<br>
+ * 作用域：
+ * <ul>
+ * <li>openScope打开的作用域优先，通常在一次请求的入口（过滤器、拦截器）打开</li>
+ * <li>TRANSACTION：不在openScope的作用域中时，按Spring事务计数，事务结束时作用域结束</li>
+ * <li>THREAD：不在openScope的作用域中时，按线程计数，每个线程每windowMillis毫秒重新计数</li>
+ * <li>REQUEST：只在openScope的作用域中计数</li>
+ * </ul>
+ * 由MybatisPaginationInterceptor.setDiagnostics开启，未开启时拦截器只多一次null判断
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class QueryDiagnostics {
+
+    private static Logger logger = LoggerFactory.getLogger(QueryDiagnostics.class);
+
+    /** openScope打开的作用域 */
+    private static final ThreadLocal<Scope> EXPLICIT = new ThreadLocal<>();
+
+    /** 一个作用域最多记录的SQL形状数，超过后新的形状不再计数 */
+    private static final int MAX_SHAPES_PER_SCOPE = 1024;
+
+    /** 调用栈最多保留的栈帧数 */
+    private static final int MAX_STACK_DEPTH = 12;
+
+    /** 调用栈中跳过的类 */
+    private static final String[] SKIPPED_FRAMES = { "me.ly.tools.mybatis.", "org.apache.ibatis.", "org.mybatis.spring.",
+            "org.springframework.aop.", "org.springframework.cglib.", "org.springframework.transaction.",
+            "java.lang.reflect.", "sun.reflect.", "jdk.internal.reflect.", "com.sun.proxy.", "java.lang.Thread" };
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final Pattern VALUES_LIST = Pattern.compile("(\\(\\?(?:\\s*,\\s*\\?)*\\))(?:\\s*,\\s*\\1)+");
+
+    /** Map&lt;SQL, 形状> */
+    private final BoundedCache<String, String> fingerprints = new BoundedCache<>(2048);
+
+    private final ThreadLocal<Scope> threadScopes = new ThreadLocal<>();
+
+    private final Deque<Report> reports = new ArrayDeque<>();
+
+    private final ScopeType scopeType;
+
+    private volatile int threshold = 10;
+
+    private volatile long windowMillis = 1000;
+
+    private volatile int maxReports = 100;
+
+    private volatile Consumer<Report> listener;
+
+    public QueryDiagnostics() {
+        this(ScopeType.TRANSACTION);
+    }
+
+    public QueryDiagnostics(ScopeType scopeType) {
+        if (scopeType == null) {
+            throw new IllegalArgumentException("scopeType不能为空");
+        }
+        this.scopeType = scopeType;
+    }
+
+    /**
+     * 在当前线程打开作用域，已打开时返回已有的作用域
+     *
+     * <pre>
+     * try (QueryDiagnostics.Scope scope = QueryDiagnostics.openScope(request.getRequestURI())) {
+     *     chain.doFilter(request, response);
+     * }
+     * </pre>
+     *
+     * @param name 作用域名称，出现在报告中
+     * @return Scope
+     */
+    public static Scope openScope(String name) {
+        Scope scope = EXPLICIT.get();
+        if (scope != null) {
+            scope.depth++;
+            return scope;
+        }
+        scope = new Scope(name, 0);
+        EXPLICIT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 记录一次SQL执行
+     *
+     * @param sql SQL
+     */
+    public void record(String sql) {
+        Scope scope = this.currentScope();
+        if (scope == null || sql == null) {
+            return;
+        }
+        String fingerprint = this.fingerprint(sql);
+        Counter counter = scope.counters.get(fingerprint);
+        if (counter == null) {
+            if (scope.counters.size() >= MAX_SHAPES_PER_SCOPE) {
+                return;
+            }
+            counter = new Counter();
+            scope.counters.put(fingerprint, counter);
+        }
+        int count = ++counter.count;
+        if (counter.report != null) {
+            counter.report.count = count;
+        } else if (count > threshold) {
+            counter.report = new Report(scope.name, fingerprint, sql, count, callSite());
+            this.report(counter.report);
+        }
+    }
+
+    private Scope currentScope() {
+        Scope scope = EXPLICIT.get();
+        if (scope != null || scopeType == ScopeType.REQUEST) {
+            return scope;
+        }
+        if (scopeType == ScopeType.TRANSACTION) {
+            return SpringTransactions.afterCompletion(this, () -> new Scope("transaction", 0), s -> {
+            });
+        }
+        long now = System.currentTimeMillis();
+        scope = threadScopes.get();
+        if (scope == null || now - scope.startedAt >= windowMillis) {
+            scope = new Scope(Thread.currentThread().getName(), now);
+            threadScopes.set(scope);
+        }
+        return scope;
+    }
+
+    private void report(Report report) {
+        logger.warn("同一作用域内SQL执行次数超过" + threshold + "次，可能是N+1查询：" + report);
+        synchronized (reports) {
+            reports.addLast(report);
+            while (reports.size() > maxReports) {
+                reports.removeFirst();
+            }
+        }
+        Consumer<Report> listener = this.listener;
+        if (listener != null) {
+            try {
+                listener.accept(report);
+            } catch (RuntimeException e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    /**
+     * SQL的形状：字符串和数字常量替换为?，IN列表和批量VALUES合并为一项，空白合并为一个空格
+     *
+     * @param sql SQL
+     * @return 形状
+     */
+    public String fingerprint(String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprints.put(sql, normalize(sql));
+        }
+        return fingerprint;
+    }
+
+    private static String normalize(String sql) {
+        StringBuilder builder = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                builder.append('?');
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+            } else if (Character.isDigit(c) && !isIdentifierPart(builder)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                builder.append('?');
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        String shape = builder.toString().trim();
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        return VALUES_LIST.matcher(shape).replaceAll("$1");
+    }
+
+    private static boolean isIdentifierPart(StringBuilder builder) {
+        if (builder.length() == 0) {
+            return false;
+        }
+        char c = builder.charAt(builder.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    /**
+     * 调用位置，去掉MyBatis、本工具和代理相关的栈帧
+     */
+    private static StackTraceElement[] callSite() {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        List<StackTraceElement> frames = new ArrayList<>(MAX_STACK_DEPTH);
+        for (StackTraceElement element : stackTrace) {
+            if (frames.size() >= MAX_STACK_DEPTH) {
+                break;
+            }
+            if (!isSkipped(element.getClassName())) {
+                frames.add(element);
+            }
+        }
+        return frames.toArray(new StackTraceElement[frames.size()]);
+    }
+
+    private static boolean isSkipped(String className) {
+        if (className.contains("$$")) {
+            return true;
+        }
+        for (String prefix : SKIPPED_FRAMES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 最近的报告，最多保留maxReports条
+     */
+    public List<Report> getReports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    public void clearReports() {
+        synchronized (reports) {
+            reports.clear();
+        }
+    }
+
+    public ScopeType getScopeType() {
+        return scopeType;
+    }
+
+    /**
+     * 同一形状执行超过该次数时报告，默认10
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold必须大于0");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * THREAD作用域的时间窗口，默认1000毫秒
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis必须大于0");
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    public int getMaxReports() {
+        return maxReports;
+    }
+
+    public void setMaxReports(int maxReports) {
+        this.maxReports = maxReports;
+    }
+
+    /**
+     * 生成报告时回调，如上报到监控系统
+     */
+    public void setListener(Consumer<Report> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 作用域类型
+     */
+    public enum ScopeType {
+        THREAD, TRANSACTION, REQUEST;
+
+        /**
+         * 按名称获取，忽略大小写
+         */
+        public static ScopeType of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 计数的作用域，只在所属线程中使用
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final String name;
+        private final long startedAt;
+        private final Map<String, Counter> counters = new HashMap<>();
+        /** 嵌套打开的层数 */
+        private int depth = 1;
+
+        private Scope(String name, long startedAt) {
+            this.name = name;
+            this.startedAt = startedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 关闭作用域。嵌套打开时只有最外层关闭时才结束
+         */
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+            if (EXPLICIT.get() == this) {
+                EXPLICIT.remove();
+            }
+        }
+    }
+
+    private static final class Counter {
+
+        int count;
+        Report report;
+    }
+
+    /**
+     * 一个作用域内一种SQL形状的重复执行报告
+     */
+    public static final class Report {
+
+        private final String scopeName;
+        private final String fingerprint;
+        private final String sql;
+        private final StackTraceElement[] stackTrace;
+        private final long time = System.currentTimeMillis();
+        /** 作用域内的执行次数，报告后继续更新 */
+        private volatile int count;
+
+        Report(String scopeName, String fingerprint, String sql, int count, StackTraceElement[] stackTrace) {
+            this.scopeName = scopeName;
+            this.fingerprint = fingerprint;
+            this.sql = sql;
+            this.count = count;
+            this.stackTrace = stackTrace;
+        }
+
+        public String getScopeName() {
+            return scopeName;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * 第一次超过阈值时的SQL
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * 第一次超过阈值时的调用栈
+         */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace.clone();
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("scope=").append(scopeName).append(", count=").append(count).append(", sql=")
+                    .append(fingerprint);
+            for (StackTraceElement element : stackTrace) {
+                builder.append("\n\tat ").append(element);
+            }
+            return builder.toString();
+        }
+    }
+}
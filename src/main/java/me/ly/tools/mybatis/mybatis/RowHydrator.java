@@ -0,0 +1,149 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import me.ly.tools.mybatis.mybatis.codec.TypeCodec;
+import me.ly.tools.mybatis.mybatis.codec.TypeCodecRegistry;
+
+/**
+ * 结果集行到实体对象的映射器。<br>
+ * 按（实体类，结果集字段布局）编译一次，之后的查询直接复用，不再做字段匹配。<br>
+ * 编译结果即读取计划：每个字段在结果集中的下标，以及从TypeCodecRegistry预先选定的转换器。
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+final class RowHydrator {
+
+    private static Logger logger = LoggerFactory.getLogger(RowHydrator.class);
+
+    private final EntityMetadata metadata;
+    private final EntityColumn[] columns;
+    /** 字段在结果集中的下标，从1开始 */
+    private final int[] indexes;
+    private final TypeCodec<?>[] codecs;
+
+    private RowHydrator(EntityMetadata metadata, EntityColumn[] columns, int[] indexes, TypeCodec<?>[] codecs) {
+        this.metadata = metadata;
+        this.columns = columns;
+        this.indexes = indexes;
+        this.codecs = codecs;
+    }
+
+    /**
+     * 根据结果集字段确定需要映射的实体字段
+     *
+     * @param metadata 实体类元数据
+     * @param labels 结果集字段名
+     * @param registry 转换器注册中心
+     * @return RowHydrator
+     */
+    static RowHydrator compile(EntityMetadata metadata, String[] labels, TypeCodecRegistry registry) {
+        // 同名字段取第一个，与ResultSet.findColumn一致
+        Map<String, Integer> indexMap = new HashMap<>((int) (labels.length / 0.75) + 1);
+        for (int i = labels.length - 1; i >= 0; i--) {
+            indexMap.put(labels[i], i + 1);
+        }
+
+        List<EntityColumn> columnList = new ArrayList<>();
+        List<Integer> indexList = new ArrayList<>();
+        for (EntityColumn column : metadata.getColumns()) {
+            Integer index = indexMap.get(column.getColumnName());
+            if (index != null) {
+                columnList.add(column);
+                indexList.add(index);
+            }
+        }
+
+        int size = columnList.size();
+        EntityColumn[] columns = columnList.toArray(new EntityColumn[size]);
+        int[] indexes = new int[size];
+        TypeCodec<?>[] codecs = new TypeCodec<?>[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = indexList.get(i);
+            codecs[i] = registry.resolve(columns[i]);
+        }
+        return new RowHydrator(metadata, columns, indexes, codecs);
+    }
+
+    /**
+     * 读取结果集字段名
+     *
+     * @param metaData 结果集元数据
+     * @return 字段名数组，按结果集顺序
+     * @throws SQLException
+     */
+    static String[] columnLabels(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        return labels;
+    }
+
+    boolean isEmpty() {
+        return columns.length == 0;
+    }
+
+    /**
+     * 将结果集当前行映射为实体对象
+     *
+     * @param rs 结果集，已定位到当前行
+     * @return 实体对象
+     * @throws SQLException
+     */
+    Object hydrate(ResultSet rs) throws SQLException {
+        Object obj = metadata.newInstance();
+        for (int i = 0; i < columns.length; i++) {
+            Object value = codecs[i].read(rs, indexes[i]);
+            try {
+                columns[i].setValue(obj, value);
+            } catch (IllegalStateException e) {
+                logger.error("", e);
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * 缓存Key：实体类 + 结果集字段布局
+     */
+    static final class Key {
+
+        private final Class<?> type;
+        private final String[] labels;
+        private final int hash;
+
+        Key(Class<?> type, String[] labels) {
+            this.type = type;
+            this.labels = labels;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(labels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type == key.type && Arrays.equals(labels, key.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
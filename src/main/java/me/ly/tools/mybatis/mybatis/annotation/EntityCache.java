@@ -0,0 +1,20 @@
+package me.ly.tools.mybatis.mybatis.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启实体缓存。BaseService.selectById 先查缓存，通过BaseService新增、修改、删除时自动清除
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EntityCache {
+
+    /** 最大缓存条数 */
+    int maxSize() default 10000;
+
+    /** 写入后多少秒过期，小于等于0不过期 */
+    long expireSeconds() default 600;
+}
@@ -0,0 +1,15 @@
+package me.ly.tools.mybatis.mybatis.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记数据库中以JSON文本保存的字段，查询时使用fastjson按字段的泛型类型解析
+ */
+@Target({ ElementType.FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface JsonColumn {
+
+}
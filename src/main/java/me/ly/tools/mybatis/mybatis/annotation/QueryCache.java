@@ -0,0 +1,18 @@
+package me.ly.tools.mybatis.mybatis.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启查询缓存。BaseService.selectAll、selectOne 按(实体类, where, 参数)缓存结果，表有修改时失效。<br>
+ * 适合配置表、字典表等修改很少的表
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryCache {
+
+    /** 写入后多少秒过期，小于等于0不过期 */
+    long expireSeconds() default 600;
+}
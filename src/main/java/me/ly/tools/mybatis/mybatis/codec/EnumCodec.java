@@ -0,0 +1,67 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EnumType;
+
+/**
+ * 枚举转换器。序号使用预先取出的values数组，名称使用预先构建的Map，不在每行调用Enum.valueOf
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class EnumCodec<E extends Enum<E>> implements TypeCodec<E> {
+
+    private final Class<E> enumClass;
+    private final E[] constants;
+    private final Map<String, E> nameMap;
+    /** null表示根据数据库值的类型自动判断：数字按序号，其它按名称 */
+    private final EnumType enumType;
+
+    public EnumCodec(Class<E> enumClass, EnumType enumType) {
+        this.enumClass = enumClass;
+        this.constants = enumClass.getEnumConstants();
+        this.nameMap = new HashMap<>((int) (constants.length / 0.75) + 1);
+        for (E e : constants) {
+            nameMap.put(e.name(), e);
+        }
+        this.enumType = enumType;
+    }
+
+    @Override
+    public E read(ResultSet rs, int index) throws SQLException {
+        if (enumType == EnumType.ORDINAL) {
+            int ordinal = rs.getInt(index);
+            return rs.wasNull() ? null : byOrdinal(ordinal);
+        }
+        if (enumType == EnumType.STRING) {
+            String name = rs.getString(index);
+            return name == null ? null : byName(name);
+        }
+        Object value = rs.getObject(index);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return byOrdinal(((Number) value).intValue());
+        }
+        return byName(value.toString());
+    }
+
+    private E byOrdinal(int ordinal) throws SQLException {
+        if (ordinal < 0 || ordinal >= constants.length) {
+            throw new SQLDataException(enumClass.getName() + "中没有序号为" + ordinal + "的枚举值");
+        }
+        return constants[ordinal];
+    }
+
+    private E byName(String name) throws SQLException {
+        E e = nameMap.get(name);
+        if (e == null) {
+            throw new SQLDataException(enumClass.getName() + "中没有名称为" + name + "的枚举值");
+        }
+        return e;
+    }
+}
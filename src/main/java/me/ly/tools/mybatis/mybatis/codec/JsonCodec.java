@@ -0,0 +1,29 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * JSON字段转换器。使用fastjson按字段的泛型类型解析，如List&lt;Long>、Map&lt;String, Object>
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class JsonCodec implements TypeCodec<Object> {
+
+    private final Type type;
+
+    public JsonCodec(Type type) {
+        this.type = type;
+    }
+
+    @Override
+    public Object read(ResultSet rs, int index) throws SQLException {
+        String text = rs.getString(index);
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        return JSON.parseObject(text, type);
+    }
+}
@@ -0,0 +1,22 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 结果集字段值转换器。在编译读取计划时按实体字段选定，之后每行直接调用
+ *
+ * @param <T> 转换后的Java类型
+ */
+public interface TypeCodec<T> {
+
+    /**
+     * 读取结果集中指定下标的值。基本数据类型字段在数据库值为null时应返回默认值
+     *
+     * @param rs 结果集，已定位到当前行
+     * @param index 字段下标，从1开始
+     * @return 转换后的值
+     * @throws SQLException
+     */
+    T read(ResultSet rs, int index) throws SQLException;
+}
@@ -0,0 +1,17 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import me.ly.tools.mybatis.mybatis.EntityColumn;
+
+/**
+ * 按实体字段创建TypeCodec，用于枚举这类需要根据具体类型或注解构造的转换器
+ */
+public interface TypeCodecFactory {
+
+    /**
+     * 为字段创建转换器
+     *
+     * @param column 实体字段
+     * @return 不支持该字段时返回null
+     */
+    TypeCodec<?> create(EntityColumn column);
+}
@@ -0,0 +1,129 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+
+import me.ly.tools.mybatis.mybatis.EntityColumn;
+import me.ly.tools.mybatis.mybatis.annotation.JsonColumn;
+
+/**
+ * TypeCodec注册中心。编译读取计划时为每个字段解析一次，查找顺序：<br>
+ * 1. 字段带@JsonColumn，使用JsonCodec<br>
+ * 2. 按字段类型注册的TypeCodec（含内置类型）<br>
+ * 3. 注册的TypeCodecFactory，最后是内置的枚举工厂（支持@Enumerated）<br>
+ * 4. 以上都没有则使用getObject
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class TypeCodecRegistry {
+
+    private final Map<Type, TypeCodec<?>> codecMap = new ConcurrentHashMap<>();
+    private final List<TypeCodecFactory> factories = new CopyOnWriteArrayList<>();
+
+    public TypeCodecRegistry() {
+        register(String.class, TypeCodecs.STRING);
+        register(Byte.class, TypeCodecs.BYTE);
+        register(byte.class, TypeCodecs.PRIMITIVE_BYTE);
+        register(Short.class, TypeCodecs.SHORT);
+        register(short.class, TypeCodecs.PRIMITIVE_SHORT);
+        register(Integer.class, TypeCodecs.INTEGER);
+        register(int.class, TypeCodecs.PRIMITIVE_INT);
+        register(Long.class, TypeCodecs.LONG);
+        register(long.class, TypeCodecs.PRIMITIVE_LONG);
+        register(Double.class, TypeCodecs.DOUBLE);
+        register(double.class, TypeCodecs.PRIMITIVE_DOUBLE);
+        register(Float.class, TypeCodecs.FLOAT);
+        register(float.class, TypeCodecs.PRIMITIVE_FLOAT);
+        register(Boolean.class, TypeCodecs.BOOLEAN);
+        register(boolean.class, TypeCodecs.PRIMITIVE_BOOLEAN);
+        register(BigDecimal.class, TypeCodecs.BIG_DECIMAL);
+        register(byte[].class, TypeCodecs.BYTES);
+        register(Date.class, TypeCodecs.TIMESTAMP);
+        register(Timestamp.class, TypeCodecs.TIMESTAMP);
+        register(java.sql.Date.class, TypeCodecs.SQL_DATE);
+        register(Time.class, TypeCodecs.SQL_TIME);
+        register(LocalDateTime.class, TypeCodecs.LOCAL_DATE_TIME);
+        register(LocalDate.class, TypeCodecs.LOCAL_DATE);
+        register(LocalTime.class, TypeCodecs.LOCAL_TIME);
+        register(Instant.class, TypeCodecs.INSTANT);
+        register(OffsetDateTime.class, TypeCodecs.OFFSET_DATE_TIME);
+        register(ZonedDateTime.class, TypeCodecs.ZONED_DATE_TIME);
+    }
+
+    /**
+     * 按字段类型注册转换器，会覆盖已有的（包括内置的）
+     *
+     * @param type 字段类型，可以是ParameterizedType
+     * @param codec 转换器
+     */
+    public void register(Type type, TypeCodec<?> codec) {
+        codecMap.put(type, codec);
+    }
+
+    /**
+     * 注册转换器工厂，先注册的优先
+     *
+     * @param factory 转换器工厂
+     */
+    public void register(TypeCodecFactory factory) {
+        factories.add(factory);
+    }
+
+    /**
+     * Spring中批量注入按类型注册的转换器
+     *
+     * @param codecs Map&lt;字段类型, 转换器>
+     */
+    public void setCodecs(Map<Class<?>, TypeCodec<?>> codecs) {
+        codecMap.putAll(codecs);
+    }
+
+    /**
+     * Spring中批量注入转换器工厂
+     *
+     * @param factories 转换器工厂
+     */
+    public void setFactories(List<TypeCodecFactory> factories) {
+        this.factories.addAll(factories);
+    }
+
+    /**
+     * 为实体字段解析转换器
+     *
+     * @param column 实体字段
+     * @return TypeCodec，不会为null
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public TypeCodec<?> resolve(EntityColumn column) {
+        if (column.getField().isAnnotationPresent(JsonColumn.class)) {
+            return new JsonCodec(column.getGenericType());
+        }
+        TypeCodec<?> codec = codecMap.get(column.getGenericType());
+        if (codec != null) {
+            return codec;
+        }
+        for (TypeCodecFactory factory : factories) {
+            codec = factory.create(column);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        Class<?> javaType = column.getJavaType();
+        if (javaType.isEnum()) {
+            Enumerated enumerated = column.getField().getAnnotation(Enumerated.class);
+            EnumType enumType = enumerated == null ? null : enumerated.value();
+            return new EnumCodec(javaType, enumType);
+        }
+        return TypeCodecs.OBJECT;
+    }
+}
@@ -0,0 +1,141 @@
+package me.ly.tools.mybatis.mybatis.codec;
+
+import java.math.BigDecimal;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内置的TypeCodec。<br>
+ * 基本数据类型在数据库值为null时返回默认值，包装类型返回null，统一使用wasNull()判断，每个值只读取一次。
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class TypeCodecs {
+
+    public static final TypeCodec<Object> OBJECT = (rs, index) -> rs.getObject(index);
+
+    public static final TypeCodec<String> STRING = (rs, index) -> rs.getString(index);
+
+    public static final TypeCodec<Byte> BYTE = (rs, index) -> {
+        byte value = rs.getByte(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Byte> PRIMITIVE_BYTE = (rs, index) -> rs.getByte(index);
+
+    public static final TypeCodec<Short> SHORT = (rs, index) -> {
+        short value = rs.getShort(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Short> PRIMITIVE_SHORT = (rs, index) -> rs.getShort(index);
+
+    public static final TypeCodec<Integer> INTEGER = (rs, index) -> {
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Integer> PRIMITIVE_INT = (rs, index) -> rs.getInt(index);
+
+    public static final TypeCodec<Long> LONG = (rs, index) -> {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Long> PRIMITIVE_LONG = (rs, index) -> rs.getLong(index);
+
+    public static final TypeCodec<Double> DOUBLE = (rs, index) -> {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Double> PRIMITIVE_DOUBLE = (rs, index) -> rs.getDouble(index);
+
+    public static final TypeCodec<Float> FLOAT = (rs, index) -> {
+        float value = rs.getFloat(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    public static final TypeCodec<Float> PRIMITIVE_FLOAT = (rs, index) -> rs.getFloat(index);
+
+    public static final TypeCodec<Boolean> BOOLEAN = (rs, index) -> {
+        boolean value = rs.getBoolean(index);
+        return rs.wasNull() ? null : value;
+    };
+
+    // getBoolean 在数据库值为null时返回false
+    public static final TypeCodec<Boolean> PRIMITIVE_BOOLEAN = (rs, index) -> rs.getBoolean(index);
+
+    public static final TypeCodec<BigDecimal> BIG_DECIMAL = (rs, index) -> rs.getBigDecimal(index);
+
+    public static final TypeCodec<byte[]> BYTES = (rs, index) -> rs.getBytes(index);
+
+    /** java.util.Date 字段使用Timestamp，保留时分秒 */
+    public static final TypeCodec<Timestamp> TIMESTAMP = (rs, index) -> rs.getTimestamp(index);
+
+    public static final TypeCodec<java.sql.Date> SQL_DATE = (rs, index) -> rs.getDate(index);
+
+    public static final TypeCodec<Time> SQL_TIME = (rs, index) -> rs.getTime(index);
+
+    /**
+     * java.time类型优先使用JDBC 4.2的getObject(index, Class)，不经过Timestamp/Time，
+     * 不丢失小数秒、时区偏移，也不受JVM时区夏令时的影响
+     */
+    public static final TypeCodec<LocalDateTime> LOCAL_DATE_TIME = javaTime(LocalDateTime.class, (rs, index) -> {
+        Timestamp value = rs.getTimestamp(index);
+        return value == null ? null : value.toLocalDateTime();
+    });
+
+    public static final TypeCodec<LocalDate> LOCAL_DATE = javaTime(LocalDate.class, (rs, index) -> {
+        java.sql.Date value = rs.getDate(index);
+        return value == null ? null : value.toLocalDate();
+    });
+
+    public static final TypeCodec<LocalTime> LOCAL_TIME = javaTime(LocalTime.class, (rs, index) -> {
+        Time value = rs.getTime(index);
+        return value == null ? null : value.toLocalTime();
+    });
+
+    /** JDBC 4.2没有定义Instant，按Timestamp读取 */
+    public static final TypeCodec<Instant> INSTANT = (rs, index) -> {
+        Timestamp value = rs.getTimestamp(index);
+        return value == null ? null : value.toInstant();
+    };
+
+    public static final TypeCodec<OffsetDateTime> OFFSET_DATE_TIME = javaTime(OffsetDateTime.class, (rs, index) -> {
+        Timestamp value = rs.getTimestamp(index);
+        return value == null ? null : OffsetDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault());
+    });
+
+    /** JDBC 4.2没有定义ZonedDateTime，按OffsetDateTime读取，保留数据库中的偏移 */
+    public static final TypeCodec<ZonedDateTime> ZONED_DATE_TIME = (rs, index) -> {
+        OffsetDateTime value = OFFSET_DATE_TIME.read(rs, index);
+        return value == null ? null : value.toZonedDateTime();
+    };
+
+    /** 不支持getObject(index, Class)的ResultSet实现类，之后直接使用fallback */
+    private static final Set<Class<?>> LEGACY_RESULT_SETS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 使用rs.getObject(index, type)读取，驱动不支持时（JDBC 4.2之前的驱动）使用fallback
+     */
+    private static <T> TypeCodec<T> javaTime(Class<T> type, TypeCodec<T> fallback) {
+        return (rs, index) -> {
+            if (!LEGACY_RESULT_SETS.isEmpty() && LEGACY_RESULT_SETS.contains(rs.getClass())) {
+                return fallback.read(rs, index);
+            }
+            try {
+                return rs.getObject(index, type);
+            } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+                LEGACY_RESULT_SETS.add(rs.getClass());
+                return fallback.read(rs, index);
+            }
+        };
+    }
+
+    private TypeCodecs() {
+    }
+}
@@ -0,0 +1,64 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+
+/**
+ * 分页方言基类。默认不支持估算，统计SQL使用标准写法
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public abstract class AbstractDialect implements Dialect {
+
+    /**
+     * 去掉最外层的ORDER BY（及其后的LIMIT等）后统计。<br>
+     * 含GROUP BY、DISTINCT、UNION的语句包装成子查询统计，其它直接替换SELECT字段为COUNT(*)
+     */
+    @Override
+    public String getCountSql(String sql) {
+        String body = sql;
+        int orderByIndex = MyBatisUtil.indexOfTopLevelKeyword(body, "ORDER BY");
+        // ORDER BY中有占位符时保留，避免参数个数不一致
+        if (orderByIndex > -1 && body.indexOf('?', orderByIndex) < 0) {
+            body = body.substring(0, orderByIndex).trim();
+        }
+        int fromIndex = MyBatisUtil.indexOfTopLevelKeyword(body, "FROM");
+        if (fromIndex < 0 || MyBatisUtil.indexOfTopLevelKeyword(body, "GROUP BY") > -1
+                || MyBatisUtil.indexOfTopLevelKeyword(body, "DISTINCT") > -1
+                || MyBatisUtil.indexOfTopLevelKeyword(body, "UNION") > -1) {
+            return "SELECT COUNT(*) AS TOTAL FROM (" + body + ") count_t";
+        }
+        return "SELECT COUNT(*) AS TOTAL " + body.substring(fromIndex);
+    }
+
+    @Override
+    public String getPageSql(String sql, int offset, int limit, PrimaryKeyResolver resolver) throws SQLException {
+        return this.pageSql(sql, offset, limit);
+    }
+
+    @Override
+    public String getLimitSql(String sql, int limit) {
+        return this.pageSql(sql, 0, limit);
+    }
+
+    @Override
+    public String getEstimateSql(String sql) {
+        return null;
+    }
+
+    @Override
+    public long getEstimate(ResultSet rs) throws SQLException {
+        return -1;
+    }
+
+    /**
+     * 基本分页SQL
+     *
+     * @param sql 原SQL
+     * @param offset 跳过的行数
+     * @param limit 查询的行数
+     * @return sql
+     */
+    protected abstract String pageSql(String sql, int offset, int limit);
+}
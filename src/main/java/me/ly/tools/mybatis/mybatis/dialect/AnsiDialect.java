@@ -0,0 +1,16 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+/**
+ * SQL:2008标准分页方言。OFFSET offset ROWS FETCH NEXT limit ROWS ONLY<br>
+ * 未知的数据库使用该方言，不支持时会直接报错，而不是不分页查询全表
+ */
+@SuppressWarnings({ "WeakerAccess" })
+public class AnsiDialect extends AbstractDialect {
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        StringBuilder sqlBuilder = new StringBuilder(sql.length() + 48).append(sql);
+        sqlBuilder.append(" OFFSET ").append(offset).append(" ROWS FETCH NEXT ").append(limit).append(" ROWS ONLY");
+        return sqlBuilder.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 分页方言。负责生成各数据库的统计、分页、估算SQL<br>
+ * 传入的sql已去掉多余空格，生成的SQL不能改变原SQL中占位符的顺序
+ */
+@SuppressWarnings({ "JavaDoc", "unused" })
+public interface Dialect {
+
+    /**
+     * 统计总条数的SQL，结果列名为TOTAL
+     *
+     * @param sql 原SQL
+     * @return sql
+     */
+    String getCountSql(String sql);
+
+    /**
+     * 分页SQL
+     *
+     * @param sql 原SQL
+     * @param offset 跳过的行数
+     * @param limit 查询的行数
+     * @param resolver 用于获取表主键，延迟关联等优化使用
+     * @return sql
+     * @throws SQLException
+     */
+    String getPageSql(String sql, int offset, int limit, PrimaryKeyResolver resolver) throws SQLException;
+
+    /**
+     * 只取前limit行的SQL，原SQL已包含ORDER BY
+     *
+     * @param sql 原SQL
+     * @param limit 查询的行数
+     * @return sql
+     */
+    String getLimitSql(String sql, int limit);
+
+    /**
+     * 估算结果行数的SQL（执行计划）
+     *
+     * @param sql 原SQL
+     * @return 不支持返回null
+     */
+    String getEstimateSql(String sql);
+
+    /**
+     * 从估算SQL的结果中读取估算行数
+     *
+     * @param rs getEstimateSql的结果，未调用next
+     * @return 无法估算返回-1
+     * @throws SQLException
+     */
+    long getEstimate(ResultSet rs) throws SQLException;
+
+    /**
+     * 表主键查询
+     */
+    interface PrimaryKeyResolver {
+
+        /**
+         * 表的第一个主键
+         *
+         * @param table 表名
+         * @return 没有主键返回null
+         * @throws SQLException
+         */
+        String getFirstPrimaryKey(String table) throws SQLException;
+    }
+}
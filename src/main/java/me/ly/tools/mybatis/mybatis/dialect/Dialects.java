@@ -0,0 +1,81 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 分页方言的选择：按配置的名称（或类名）创建，或按数据库产品名称自动识别
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public final class Dialects {
+
+    private static Logger logger = LoggerFactory.getLogger(Dialects.class);
+
+    private static final Map<String, Class<? extends Dialect>> ALIASES = new HashMap<>();
+
+    static {
+        ALIASES.put("mysql", MySqlDialect.class);
+        ALIASES.put("mariadb", MySqlDialect.class);
+        ALIASES.put("postgresql", PostgreSqlDialect.class);
+        ALIASES.put("h2", H2Dialect.class);
+        ALIASES.put("sqlserver", SqlServerDialect.class);
+        ALIASES.put("sqlserver2005", SqlServer2005Dialect.class);
+        ALIASES.put("oracle", OracleDialect.class);
+        ALIASES.put("oracle12c", Oracle12cDialect.class);
+        ALIASES.put("ansi", AnsiDialect.class);
+    }
+
+    private Dialects() {
+    }
+
+    /**
+     * 按名称创建方言
+     *
+     * @param name 别名（mysql、mariadb、postgresql、h2、sqlserver、sqlserver2005、oracle、oracle12c、ansi）或Dialect实现类的全限定名
+     * @return Dialect
+     */
+    public static Dialect of(String name) {
+        Class<? extends Dialect> dialectClass = ALIASES.get(name.trim().toLowerCase(Locale.ROOT));
+        try {
+            if (dialectClass == null) {
+                dialectClass = Class.forName(name.trim()).asSubclass(Dialect.class);
+            }
+            return dialectClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("无法创建分页方言：" + name, e);
+        }
+    }
+
+    /**
+     * 按数据库产品名称识别方言，未知的数据库使用AnsiDialect
+     *
+     * @param productName DatabaseMetaData.getDatabaseProductName()
+     * @param majorVersion DatabaseMetaData.getDatabaseMajorVersion()
+     * @return Dialect
+     */
+    public static Dialect detect(String productName, int majorVersion) {
+        String name = productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+        if (name.contains("mysql") || name.contains("mariadb")) {
+            return new MySqlDialect();
+        }
+        if (name.contains("postgresql")) {
+            return new PostgreSqlDialect();
+        }
+        if (name.equals("h2")) {
+            return new H2Dialect();
+        }
+        if (name.contains("sql server")) {
+            // 11为SQL Server 2012，之前的版本没有OFFSET FETCH
+            return majorVersion >= 11 ? new SqlServerDialect() : new SqlServer2005Dialect();
+        }
+        if (name.contains("oracle")) {
+            return majorVersion >= 12 ? new Oracle12cDialect() : new OracleDialect();
+        }
+        logger.warn("未识别的数据库 " + productName + "，分页使用标准SQL（OFFSET FETCH），可通过dialect属性指定方言");
+        return new AnsiDialect();
+    }
+}
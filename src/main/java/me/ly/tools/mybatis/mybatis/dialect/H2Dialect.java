@@ -0,0 +1,12 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+/**
+ * H2分页方言。与PostgreSQL相同使用LIMIT OFFSET，不支持估算
+ */
+public class H2Dialect extends PostgreSqlDialect {
+
+    @Override
+    public String getEstimateSql(String sql) {
+        return null;
+    }
+}
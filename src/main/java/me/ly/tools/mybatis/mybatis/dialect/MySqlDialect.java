@@ -0,0 +1,111 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+
+/**
+ * Mysql分页方言。LIMIT offset,limit；单表查询使用延迟关联（先按主键分页再关联取字段），EXPLAIN估算行数
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public class MySqlDialect extends AbstractDialect {
+
+    @Override
+    public String getPageSql(String sql, int offset, int limit, PrimaryKeyResolver resolver) throws SQLException {
+        if (resolver == null || MyBatisUtil.isJoinQuery(sql)) {
+            return this.pageSql(sql, offset, limit);
+        }
+        return this.subqueryPageSql(sql, offset, limit, resolver);
+    }
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        StringBuilder sqlBuilder = new StringBuilder(sql.length() + 24).append(sql);
+        sqlBuilder.append(" LIMIT ");
+        if (offset > 0) {
+            sqlBuilder.append(offset).append(",");
+        }
+        return sqlBuilder.append(limit).toString();
+    }
+
+    /**
+     * Mysql数据库的子查询分页语句
+     *
+     * @param sql sql语句
+     * @param offset 跳过的行数
+     * @param limit 查询的行数
+     * @param resolver 表主键查询
+     * @return sql
+     * @throws SQLException
+     */
+    @SuppressWarnings({ "StringBufferReplaceableByString", "JavaDoc" })
+    private String subqueryPageSql(String sql, int offset, int limit, PrimaryKeyResolver resolver) throws SQLException {
+
+        String tableSet = MyBatisUtil.getTableSetFromSql(sql).trim();
+        // 获取别名
+        int blankIndex = tableSet.lastIndexOf(" ");
+        String alias = "";
+        String tableName = tableSet;
+        if (blankIndex > -1) {
+            alias = tableSet.substring(blankIndex);
+            tableName = tableSet.substring(0, blankIndex);
+        }
+        String idName = resolver.getFirstPrimaryKey(tableName);
+        if (idName == null) {
+            return this.pageSql(sql, offset, limit);
+        }
+        String selectSet = MyBatisUtil.getSelectSetFromSql(sql);
+        String from = "";
+        int fromIndex = sql.toUpperCase().indexOf("FROM ");
+        if (fromIndex > -1) {
+            from = sql.substring(fromIndex).replace(alias, "");
+        }
+        // 是否存在别名，不存在则添加别名
+        if (StringUtils.isBlank(alias)) {
+            alias = "t1";
+            String[] strs = selectSet.split(",");
+            for (int i = 0; i < strs.length; i++) {
+                strs[i] = alias + "." + strs[i];
+            }
+            selectSet = StringUtils.join(strs, ",");
+        }
+
+        /*
+         * SELECT company_name FROM test1 t1 JOIN (SELECT id as id FROM test1
+         * ORDER BY company_name limit 736817,20) as t2 ON t2.id = t1.id;
+         */
+        StringBuilder sqlBuilder = new StringBuilder("SELECT ");
+        sqlBuilder.append(selectSet).append(" FROM ").append(tableName).append(" ").append(alias);
+        sqlBuilder.append(" JOIN ").append(" (SELECT ").append(idName).append(" AS id ");
+        sqlBuilder.append(from).append(" LIMIT ").append(offset).append(",");
+        sqlBuilder.append(limit).append(") t2 ON t2.id = t1.").append(idName);
+
+        return sqlBuilder.toString();
+    }
+
+    @Override
+    public String getEstimateSql(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    /**
+     * 第一行为驱动表，rows * filtered% 为估算的结果行数
+     */
+    @Override
+    public long getEstimate(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return -1;
+        }
+        double rows = rs.getDouble("rows");
+        double filtered = 100;
+        try {
+            filtered = rs.getDouble("filtered");
+        } catch (SQLException ignored) {
+            // 低版本Mysql没有filtered列
+        }
+        return Math.round(rows * filtered / 100);
+    }
+}
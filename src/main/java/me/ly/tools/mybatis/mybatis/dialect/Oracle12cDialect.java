@@ -0,0 +1,7 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+/**
+ * Oracle 12c及以上分页方言。使用OFFSET FETCH
+ */
+public class Oracle12cDialect extends AnsiDialect {
+}
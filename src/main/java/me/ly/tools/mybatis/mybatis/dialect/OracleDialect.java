@@ -0,0 +1,21 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+/**
+ * Oracle分页方言（11g及以下）。使用ROWNUM
+ */
+@SuppressWarnings({ "WeakerAccess" })
+public class OracleDialect extends AbstractDialect {
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        StringBuilder sqlBuilder = new StringBuilder(sql.length() + 96).append(sql);
+        if (offset <= 0) {
+            sqlBuilder.insert(0, "SELECT * FROM (").append(") WHERE ROWNUM <= ").append(limit);
+            return sqlBuilder.toString();
+        }
+        int begin = offset + 1;
+        sqlBuilder.insert(0, "SELECT U.*, ROWNUM r FROM (").append(") U WHERE ROWNUM < ").append(begin + limit);
+        sqlBuilder.insert(0, "SELECT * FROM (").append(") WHERE r >= ").append(begin);
+        return sqlBuilder.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PostgreSQL分页方言。LIMIT limit OFFSET offset，EXPLAIN估算行数
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc" })
+public class PostgreSqlDialect extends AbstractDialect {
+
+    private static final Pattern ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        StringBuilder sqlBuilder = new StringBuilder(sql.length() + 32).append(sql);
+        sqlBuilder.append(" LIMIT ").append(limit);
+        if (offset > 0) {
+            sqlBuilder.append(" OFFSET ").append(offset);
+        }
+        return sqlBuilder.toString();
+    }
+
+    @Override
+    public String getEstimateSql(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    /**
+     * 第一行为最外层节点，如：Seq Scan on user (cost=0.00..1.05 rows=5 width=36)
+     */
+    @Override
+    public long getEstimate(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return -1;
+        }
+        Matcher matcher = ROWS_PATTERN.matcher(rs.getString(1));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,44 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import java.util.regex.Pattern;
+
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+
+/**
+ * SQL Server 2005/2008分页方言（2012以下没有OFFSET FETCH）。使用ROW_NUMBER() OVER (ORDER BY ...)编号后按行号截取。<br>
+ * 行号加在原SELECT字段之前，排序表达式在原语句中解析；含DISTINCT、UNION的语句先包装为子查询再编号，排序字段去掉表别名。
+ * ORDER BY移到了SELECT字段中，其中有占位符时参数顺序会改变，不支持
+ */
+@SuppressWarnings({ "WeakerAccess" })
+public class SqlServer2005Dialect extends AbstractDialect {
+
+    /** 表别名，如u.name中的u. */
+    private static final Pattern QUALIFIER = Pattern.compile("\\b\\w+\\.(?=[\\w\\[\"])");
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        String body = sql;
+        String orderBy = "(SELECT NULL)";
+        int orderByIndex = MyBatisUtil.indexOfTopLevelKeyword(sql, "ORDER BY");
+        if (orderByIndex > -1) {
+            orderBy = sql.substring(orderByIndex + "ORDER BY".length()).trim();
+            if (orderBy.indexOf('?') > -1) {
+                throw new IllegalStateException("SQL Server 2005/2008分页不支持ORDER BY中使用参数：" + sql);
+            }
+            body = sql.substring(0, orderByIndex).trim();
+        }
+        StringBuilder sqlBuilder = new StringBuilder(sql.length() + 160).append("SELECT * FROM (");
+        if (MyBatisUtil.indexOfTopLevelKeyword(body, "DISTINCT") > -1
+                || MyBatisUtil.indexOfTopLevelKeyword(body, "UNION") > -1) {
+            sqlBuilder.append("SELECT ROW_NUMBER() OVER (ORDER BY ").append(QUALIFIER.matcher(orderBy).replaceAll(""))
+                    .append(") AS row_num_, page_t.* FROM (").append(body).append(") page_t");
+        } else {
+            // body以SELECT开头
+            sqlBuilder.append("SELECT ROW_NUMBER() OVER (ORDER BY ").append(orderBy).append(") AS row_num_,")
+                    .append(body.substring("SELECT".length()));
+        }
+        sqlBuilder.append(") page_t2 WHERE row_num_ > ").append(offset).append(" AND row_num_ <= ")
+                .append((long) offset + limit).append(" ORDER BY row_num_");
+        return sqlBuilder.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package me.ly.tools.mybatis.mybatis.dialect;
+
+import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+
+/**
+ * SQL Server 2012及以上分页方言。OFFSET FETCH必须跟在ORDER BY之后，没有排序时使用ORDER BY (SELECT NULL)
+ */
+public class SqlServerDialect extends AnsiDialect {
+
+    @Override
+    protected String pageSql(String sql, int offset, int limit) {
+        if (MyBatisUtil.indexOfTopLevelKeyword(sql, "ORDER BY") < 0) {
+            sql = sql + " ORDER BY (SELECT NULL)";
+        }
+        return super.pageSql(sql, offset, limit);
+    }
+}
@@ -0,0 +1,105 @@
+package me.ly.tools.mybatis.utils;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有容量上限的并发缓存，带命中/未命中计数。<br>
+ * 用于缓存数量有限、生成代价较高的对象（如SQL）。超过上限时按ConcurrentHashMap的迭代顺序淘汰约四分之一（与访问频率无关，不是LRU），保证异常情况下内存不会无限增长。
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public class BoundedCache<K, V> {
+
+    private final ConcurrentMap<K, V> map = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private volatile int maxSize;
+
+    public BoundedCache(int maxSize) {
+        this.setMaxSize(maxSize);
+    }
+
+    /**
+     * 获取缓存值
+     *
+     * @param key key
+     * @return 不存在返回null
+     */
+    public V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 放入缓存。已存在时返回已有的值
+     *
+     * @param key key
+     * @param value value
+     * @return 缓存中的值
+     */
+    public V put(K key, V value) {
+        if (map.size() >= maxSize) {
+            evict();
+        }
+        V exist = map.putIfAbsent(key, value);
+        return exist == null ? value : exist;
+    }
+
+    /**
+     * 按迭代顺序（即哈希桶顺序）移除，直到剩余约四分之三
+     */
+    private void evict() {
+        int target = maxSize - maxSize / 4;
+        Iterator<K> iterator = map.keySet().iterator();
+        while (map.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount.increment();
+        }
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize必须大于0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache{size=" + size() + ", maxSize=" + maxSize + ", hit=" + getHitCount() + ", miss=" + getMissCount()
+                + ", eviction=" + getEvictionCount() + "}";
+    }
+}
@@ -0,0 +1,107 @@
+package me.ly.tools.mybatis.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 字段访问器，由ReflectUtil.accessor按(类, 字段名)解析一次后缓存复用。<br>
+ * 读取直接访问字段；写入优先调用public的setter方法，没有setter时直接写字段。EntityColumn也通过它访问字段，两处规则一致
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public final class FieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+    /** final字段没有MethodHandle，使用Field.set */
+    private final MethodHandle setter;
+
+    FieldAccessor(Class<?> clazz, Field field) throws IllegalAccessException {
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        this.field = field;
+        this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        MethodHandle setter = null;
+        Method method = findSetter(clazz, field);
+        if (method != null) {
+            try {
+                method.setAccessible(true);
+                setter = lookup.unreflect(method).asType(SETTER_TYPE);
+            } catch (IllegalAccessException | SecurityException ignored) {
+                // 使用字段
+            }
+        }
+        if (setter == null && !Modifier.isFinal(field.getModifiers())) {
+            setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        }
+        this.setter = setter;
+    }
+
+    /**
+     * 创建字段访问器，EntityColumn等需要自己缓存访问器时使用
+     *
+     * @param clazz 查找setter方法的类
+     * @param field 字段，可以是clazz父类中的字段
+     * @return FieldAccessor
+     * @throws IllegalAccessException 无法访问字段
+     */
+    public static FieldAccessor of(Class<?> clazz, Field field) throws IllegalAccessException {
+        return new FieldAccessor(clazz, field);
+    }
+
+    private static Method findSetter(Class<?> clazz, Field field) {
+        try {
+            return clazz.getMethod("set" + StringUtils.capitalize(field.getName()), field.getType());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * 读取字段值
+     *
+     * @param target 目标对象
+     * @return 字段值
+     */
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 设置字段值
+     *
+     * @param target 目标对象
+     * @param value 字段值
+     */
+    public void set(Object target, Object value) {
+        try {
+            if (setter != null) {
+                setter.invokeExact(target, value);
+            } else {
+                field.set(target, value);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
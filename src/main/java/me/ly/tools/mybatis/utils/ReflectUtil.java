@@ -2,18 +2,15 @@ package me.ly.tools.mybatis.utils;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
-
-import javax.persistence.Column;
-import javax.persistence.Id;
-import javax.persistence.Table;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import me.ly.tools.mybatis.mybatis.MyBatisUtil;
+import me.ly.tools.mybatis.mybatis.EntityMetadata;
 
 /**
  * 反射工具类
@@ -26,18 +23,13 @@ public class ReflectUtil {
     private static Logger logger = LoggerFactory.getLogger(ReflectUtil.class);
 
     /**
-     * 利用反射获取表名。需定义javax.persistence.@Table，如果未定义则返回类名
+     * 获取表名。需定义javax.persistence.@Table，如果未定义则返回类名
      * 
      * @param clazz
      * @return
      */
     public static String tableName(Class<?> clazz) {
-        Table table = clazz.getAnnotation(Table.class);
-        if (null != table && !"".equals(table.name().trim())) {
-            return table.name();
-        }
-        logger.warn("{}未配置@Table,将使用类名作为对应的表名", clazz);
-        return clazz.getSimpleName();
+        return EntityMetadata.of(clazz).getTableName();
     }
 
     /**
@@ -47,25 +39,57 @@ public class ReflectUtil {
      *
      * 
      * @param clazz
-     * @return
+     * @return 不可修改的Map
      */
     public static Map<String, String> id(Class<?> clazz) {
-        Map<String, String> map = new HashMap<>();
-        for (Field field : clazz.getDeclaredFields()) {
-            if (!field.isAnnotationPresent(Id.class)) {
-                continue;
-            }
-            map.put(MyBatisUtil.KEY_ID_FIELD, field.getName());
-            Column column = field.getAnnotation(Column.class);
-            if (column == null || "".equals(column.name().trim())) {
-                map.put(MyBatisUtil.KEY_ID_COLUMN, field.getName());
-                return map;
-            }
-            map.put(MyBatisUtil.KEY_ID_COLUMN, column.name());
-            return map;
+        Map<String, String> map = EntityMetadata.of(clazz).getIdMap();
+        if (map == null) {
+            throw new RuntimeException("POJO 没有定义 @Id");
+        }
+        return map;
+    }
+
+    /** 按类缓存的字段访问器，Map&lt;字段名, 访问器>，字段不存在时缓存NO_FIELD */
+    private static final ClassValue<ConcurrentMap<String, Object>> ACCESSORS = new ClassValue<ConcurrentMap<String, Object>>() {
+        @Override
+        protected ConcurrentMap<String, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final Object NO_FIELD = new Object();
+
+    /**
+     * 获取字段访问器，包括父类中的字段。结果按(类, 字段名)缓存，字段不存在也会缓存
+     *
+     * @param clazz 类
+     * @param fieldName 字段名
+     * @return 字段不存在返回null
+     */
+    public static FieldAccessor accessor(Class<?> clazz, String fieldName) {
+        ConcurrentMap<String, Object> accessors = ACCESSORS.get(clazz);
+        Object accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            accessor = resolveAccessor(clazz, fieldName);
+            accessors.putIfAbsent(fieldName, accessor);
+        }
+        return accessor == NO_FIELD ? null : (FieldAccessor) accessor;
+    }
 
+    private static Object resolveAccessor(Class<?> clazz, String fieldName) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(fieldName)) {
+                    try {
+                        return new FieldAccessor(clazz, field);
+                    } catch (IllegalAccessException | RuntimeException e) {
+                        logger.error("", e);
+                        return NO_FIELD;
+                    }
+                }
+            }
         }
-        throw new RuntimeException("POJO 没有定义 @Id");
+        return NO_FIELD;
     }
 
     /**
@@ -76,18 +100,16 @@ public class ReflectUtil {
      * @return 目标属性的值
      */
     public static Object getFieldValue(Object obj, String fieldName) {
-        Object result = null;
-        Field field = ReflectUtil.getField(obj, fieldName);
-        if (null == field) {
+        FieldAccessor accessor = ReflectUtil.accessor(obj.getClass(), fieldName);
+        if (null == accessor) {
             return null;
         }
-        field.setAccessible(true);
         try {
-            result = field.get(obj);
+            return accessor.get(obj);
         } catch (Exception e) {
             logger.error("", e);
         }
-        return result;
+        return null;
     }
 
     /**
@@ -98,38 +120,24 @@ public class ReflectUtil {
      * @return 目标字段
      */
     public static Field getField(Object obj, String fieldName) {
-        Field field = null;
-        for (Class<?> clazz = obj.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
-            try {
-                field = clazz.getDeclaredField(fieldName);
-                break;
-            } catch (NoSuchFieldException e) {
-                // 这里不用做处理，子类没有该字段可能对应的父类有，都没有就返回null。
-            }
-        }
-        return field;
+        FieldAccessor accessor = ReflectUtil.accessor(obj.getClass(), fieldName);
+        return accessor == null ? null : accessor.getField();
     }
 
     /**
-     * 设置字段值
+     * 设置字段值，存在setter方法时调用setter
      * 
      * @param obj
      * @param fieldName
      * @param fieldValue
      */
     public static void setFieldValue(Object obj, String fieldName, Object fieldValue) {
-        Field field = ReflectUtil.getField(obj, fieldName);
-        field.setAccessible(true);
-        String methodName = "set" + StringUtils.capitalize(fieldName);
+        FieldAccessor accessor = ReflectUtil.accessor(obj.getClass(), fieldName);
+        if (null == accessor) {
+            throw new IllegalArgumentException(obj.getClass().getName() + "中没有字段" + fieldName);
+        }
         try {
-            Method mt = obj.getClass().getMethod(methodName, field.getType());
-            mt.invoke(obj, fieldValue);
-        } catch (NoSuchMethodException nme) {
-            try {
-                field.set(obj, fieldValue);
-            } catch (IllegalAccessException e) {
-                logger.error("", e);
-            }
+            accessor.set(obj, fieldValue);
         } catch (Exception e) {
             logger.error("", e);
         }
@@ -0,0 +1,75 @@
+package me.ly.tools.mybatis.utils;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Spring事务工具类，类路径中没有spring-tx时所有方法都按不在事务中处理
+ */
+@SuppressWarnings({ "WeakerAccess", "JavaDoc", "unused" })
+public final class SpringTransactions {
+
+    private static final boolean TRANSACTION_PRESENT = ClassUtils.isPresent(
+            "org.springframework.transaction.support.TransactionSynchronizationManager",
+            SpringTransactions.class.getClassLoader());
+
+    private SpringTransactions() {
+    }
+
+    /**
+     * 是否在读写事务中，读写事务中可能读到未提交的数据，查询结果不应放入缓存
+     */
+    public static boolean isWritableTransaction() {
+        return TRANSACTION_PRESENT && TransactionSupport.isWritableTransaction();
+    }
+
+    /**
+     * 当前线程在Spring事务中时，事务结束后执行action。同一事务中同一个resourceKey只注册一次，
+     * 每次调用返回同一个state，用于累积事务结束后要处理的数据
+     *
+     * @param resourceKey 事务资源key
+     * @param stateFactory 创建state
+     * @param action 事务结束后执行
+     * @return state，不在事务中返回null
+     */
+    public static <S> S afterCompletion(Object resourceKey, Supplier<S> stateFactory, Consumer<S> action) {
+        return TRANSACTION_PRESENT ? TransactionSupport.afterCompletion(resourceKey, stateFactory, action) : null;
+    }
+
+    /**
+     * Spring事务相关，类路径中没有spring-tx时不加载
+     */
+    private static final class TransactionSupport {
+
+        static boolean isWritableTransaction() {
+            return TransactionSynchronizationManager.isActualTransactionActive()
+                    && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+
+        @SuppressWarnings("unchecked")
+        static <S> S afterCompletion(final Object resourceKey, Supplier<S> stateFactory, final Consumer<S> action) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return null;
+            }
+            S state = (S) TransactionSynchronizationManager.getResource(resourceKey);
+            if (state == null) {
+                final S newState = stateFactory.get();
+                TransactionSynchronizationManager.bindResource(resourceKey, newState);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(resourceKey);
+                        action.accept(newState);
+                    }
+                });
+                state = newState;
+            }
+            return state;
+        }
+    }
+}
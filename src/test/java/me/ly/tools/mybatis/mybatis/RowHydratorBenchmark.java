@@ -0,0 +1,312 @@
+package me.ly.tools.mybatis.mybatis;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.apache.commons.lang3.StringUtils;
+
+import me.ly.tools.mybatis.mybatis.codec.TypeCodecRegistry;
+
+/**
+ * 结果集映射的吞吐量对比：改造前的 newInstance + 反射逐字段设置，与改造后的 RowHydrator。<br>
+ * 不连接数据库，不是单元测试，直接运行main：
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) me.ly.tools.mybatis.mybatis.RowHydratorBenchmark
+ * </pre>
+ *
+ * 两组数据：
+ * <ul>
+ * <li>mapping：值已读出，只比较创建对象和设置字段，不含JDBC取值</li>
+ * <li>hydrate：从内存中的ResultSet（动态代理）读取并映射，含TypeCodec取值，代理调用本身也计入耗时</li>
+ * </ul>
+ */
+public class RowHydratorBenchmark {
+
+    private static final int ROWS = 50000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 10;
+
+    private static final String[] LABELS = { "id", "name", "age", "email", "create_time", "enabled", "score", "remark" };
+
+    /** 防止JIT消除结果 */
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        Object[][] rows = rows();
+        EntityMetadata metadata = EntityMetadata.of(BenchUser.class);
+        EntityColumn[] columns = columns(metadata);
+        RowHydrator hydrator = RowHydrator.compile(metadata, LABELS, new TypeCodecRegistry());
+        String[] fieldNames = new String[LABELS.length];
+        for (int i = 0; i < columns.length; i++) {
+            fieldNames[i] = columns[i].getFieldName();
+        }
+
+        report("mapping  legacy reflection", () -> {
+            for (Object[] row : rows) {
+                Object obj = BenchUser.class.getDeclaredConstructor().newInstance();
+                for (int i = 0; i < fieldNames.length; i++) {
+                    legacySetFieldValue(obj, fieldNames[i], row[i]);
+                }
+                sink += obj.hashCode();
+            }
+        });
+        report("mapping  EntityColumn handles", () -> {
+            for (Object[] row : rows) {
+                Object obj = metadata.newInstance();
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i].setValue(obj, row[i]);
+                }
+                sink += obj.hashCode();
+            }
+        });
+        report("hydrate  legacy reflection", () -> {
+            ResultSet rs = resultSet(rows);
+            while (rs.next()) {
+                Object obj = BenchUser.class.getDeclaredConstructor().newInstance();
+                for (int i = 0; i < fieldNames.length; i++) {
+                    legacySetFieldValue(obj, fieldNames[i], rs.getObject(LABELS[i]));
+                }
+                sink += obj.hashCode();
+            }
+        });
+        report("hydrate  RowHydrator", () -> {
+            ResultSet rs = resultSet(rows);
+            while (rs.next()) {
+                sink += hydrator.hydrate(rs).hashCode();
+            }
+        });
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void report(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-32s %8.2fM rows/s%n", name, ROWS / (best / 1e9) / 1e6);
+    }
+
+    /**
+     * 改造前ReflectUtil.setFieldValue的实现：每次查找字段和setter
+     */
+    private static void legacySetFieldValue(Object obj, String fieldName, Object fieldValue) throws Exception {
+        Field field = null;
+        for (Class<?> clazz = obj.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+            try {
+                field = clazz.getDeclaredField(fieldName);
+                break;
+            } catch (NoSuchFieldException e) {
+                // 父类中查找
+            }
+        }
+        field.setAccessible(true);
+        String methodName = "set" + StringUtils.capitalize(fieldName);
+        try {
+            Method method = obj.getClass().getMethod(methodName, field.getType());
+            method.invoke(obj, fieldValue);
+        } catch (NoSuchMethodException e) {
+            field.set(obj, fieldValue);
+        }
+    }
+
+    private static EntityColumn[] columns(EntityMetadata metadata) {
+        EntityColumn[] columns = new EntityColumn[LABELS.length];
+        List<EntityColumn> all = metadata.getColumns();
+        for (int i = 0; i < LABELS.length; i++) {
+            for (EntityColumn column : all) {
+                if (column.getColumnName().equals(LABELS[i])) {
+                    columns[i] = column;
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static Object[][] rows() {
+        Object[][] rows = new Object[ROWS][];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[] { (long) i, "user" + i, i % 90, "user" + i + "@example.com", new Timestamp(now + i),
+                    i % 2 == 0, i * 0.5, i % 10 == 0 ? null : "remark" };
+        }
+        return rows;
+    }
+
+    /**
+     * 基于内存数组的ResultSet，只实现映射用到的方法
+     */
+    private static ResultSet resultSet(final Object[][] rows) {
+        InvocationHandler handler = new InvocationHandler() {
+
+            private int row = -1;
+            private boolean wasNull;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("next".equals(name)) {
+                    return ++row < rows.length;
+                }
+                if ("wasNull".equals(name)) {
+                    return wasNull;
+                }
+                if ("getMetaData".equals(name)) {
+                    return metaData();
+                }
+                if (name.startsWith("get") && args != null && args.length == 1) {
+                    int index = args[0] instanceof Integer ? (Integer) args[0] : indexOf((String) args[0]);
+                    Object value = rows[row][index - 1];
+                    wasNull = value == null;
+                    return convert(method.getReturnType(), value);
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                handler);
+    }
+
+    private static Object convert(Class<?> type, Object value) {
+        if (value != null || !type.isPrimitive()) {
+            return value;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        return type == long.class ? (Object) 0L : (Object) 0;
+    }
+
+    private static int indexOf(String label) {
+        for (int i = 0; i < LABELS.length; i++) {
+            if (LABELS[i].equals(label)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException(label);
+    }
+
+    private static ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+                    if ("getColumnCount".equals(method.getName())) {
+                        return LABELS.length;
+                    }
+                    if ("getColumnLabel".equals(method.getName())) {
+                        return LABELS[(Integer) args[0] - 1];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private interface Task {
+
+        void run() throws Exception;
+    }
+
+    @Table(name = "bench_user")
+    public static class BenchUser {
+
+        @Id
+        @Column(name = "id")
+        private Long id;
+        @Column(name = "name")
+        private String name;
+        @Column(name = "age")
+        private Integer age;
+        @Column(name = "email")
+        private String email;
+        @Column(name = "create_time")
+        private Date createTime;
+        @Column(name = "enabled")
+        private Boolean enabled;
+        @Column(name = "score")
+        private Double score;
+        @Column(name = "remark")
+        private String remark;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public Date getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(Date createTime) {
+            this.createTime = createTime;
+        }
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+    }
+}